@@ -0,0 +1,17 @@
+package com.app.bubble;
+
+/**
+ * Entry point of the network load test in DiagnosticsActivity. Debug builds run LoadTestDriver
+ * against a LocalStubServer; release builds (src/release) ship neither and hide the test.
+ */
+final class LoadTest {
+
+    static final boolean AVAILABLE = true;
+
+    private LoadTest() {}
+
+    /** Blocks; returns the printable report. */
+    static String run(int operations, int concurrency, long latencyMs, long jitterMs, double errorRate) throws Exception {
+        return new LoadTestDriver(operations, concurrency, latencyMs, jitterMs, errorRate).run().toString();
+    }
+}
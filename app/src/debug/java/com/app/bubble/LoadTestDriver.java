@@ -0,0 +1,189 @@
+package com.app.bubble;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays OCR-like text through the real translate-then-refine path (TranslateApi, streaming
+ * GeminiApi, HttpTransport) against a LocalStubServer, and reports throughput and latency
+ * percentiles: to the translation, to the first refined token (what the user waits for) and to
+ * the end of the refined text.
+ *
+ * Every call gets an ApiConfig aimed at the stub with the caches off, so every operation goes
+ * over the (loopback) network and nothing the stub answers ends up in a cache. Nothing
+ * process-wide changes: captures translated or refined meanwhile still use the real servers and
+ * the caches.
+ * Debug builds only. Blocks, so call it off the main thread.
+ */
+final class LoadTestDriver {
+
+    private static final String FROM_LANG = "en";
+    private static final String TO_LANG = "ml";
+    private static final String TARGET_LANGUAGE = "Malayalam";
+    private static final String STUB_API_KEY = "stub";
+
+    // What the OCR path actually produces: broken lines, hyphenation, stray symbols, short UI
+    // strings, and page-long captures that TextSegmenter splits into several requests.
+    private static final String[] CORPUS = {
+            "Settings",
+            "Tap to retry",
+            "Your order has been shipped and will arrive\nin 2-3 business days.",
+            "Hey, are we still on for tomorrow? Let me know\nif 6 works for you :)",
+            "WARNING: Do not operate this device while charg-\ning. Keep away from water and heat sources.",
+            "Terms of Service | Privacy Policy | Cookie Settings | Contact us\n© 2024 All rights reserved.",
+            "The city council voted on Tuesday to extend the\nevening bus service through the winter months,\n"
+                    + "citing a sharp rise in ridership since the new\nroutes opened in September. Officials said the\n"
+                    + "extension would cost about 1.2 million and be\nfunded from the transport budget.\n\n"
+                    + "Residents who spoke at the meeting were largely\nsupportive, though several asked for better\n"
+                    + "lighting at stops on the east side. \"It's dark\nby five now,\" one commuter said.\n\n"
+                    + "The council will review the service again in\nMarch, when updated ridership figures are\n"
+                    + "expected. A public survey opens next week on\nthe city website and at all branch libraries.",
+            "Chapter 3\n\nThe rain had not stopped for three days. Maria\nstood at the window watching the street fill\n"
+                    + "with water, the gutters overflowing, the old\nman from next door wading through it with his\n"
+                    + "trousers rolled up to the knee. She thought of\nthe letter in her pocket and what it would mean\n"
+                    + "if she opened it now, before her brother came\nhome. In the end she left it sealed. There would\n"
+                    + "be time enough for bad news; there always was.\n\n"
+                    + "When he finally arrived, soaked and laughing,\nshe had already made tea. They sat at the\n"
+                    + "kitchen table and talked about nothing at all\nuntil the lights flickered and went out.",
+    };
+
+    /** Results of one run. Latencies in milliseconds. */
+    static final class Report {
+        int operations;
+        int failures;
+        long requests;
+        long serverErrors;
+        double wallSeconds;
+        double throughput; // Operations per second
+        double translateP50, translateP95, translateP99;
+        double firstTokenP50, firstTokenP95, firstTokenP99;
+        double totalP50, totalP95, totalP99;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Operations:      %d (%d failed)\n"
+                    + "HTTP requests:   %d (%d stub errors)\n"
+                    + "Wall time:       %.1f s\n"
+                    + "Throughput:      %.1f ops/s\n"
+                    + "Translate p50/95/99:   %.0f / %.0f / %.0f ms\n"
+                    + "First token p50/95/99: %.0f / %.0f / %.0f ms\n"
+                    + "Total p50/95/99:       %.0f / %.0f / %.0f ms",
+                    operations, failures, requests, serverErrors, wallSeconds, throughput,
+                    translateP50, translateP95, translateP99, firstTokenP50, firstTokenP95, firstTokenP99,
+                    totalP50, totalP95, totalP99);
+        }
+    }
+
+    private final int operations;
+    private final int concurrency;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+
+    /**
+     * @param operations Translate-then-refine operations to run.
+     * @param concurrency How many run at the same time (like several captures queued back to back).
+     * @param latencyMs Stub response delay; jitterMs is added or subtracted at random.
+     * @param errorRate Share of stub responses that are 503s, 0..1.
+     */
+    LoadTestDriver(int operations, int concurrency, long latencyMs, long jitterMs, double errorRate) {
+        this.operations = operations;
+        this.concurrency = concurrency;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+    }
+
+    Report run() throws IOException, InterruptedException {
+        LocalStubServer server = new LocalStubServer(latencyMs, jitterMs, errorRate);
+        server.start();
+        final ApiConfig config = new ApiConfig(server.getTranslateUrl(), server.getGenerateUrl(), false);
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            // 1. Fixed seed: runs with the same settings replay the same texts
+            Random random = new Random(42);
+            final long[] translateNanos = new long[operations];
+            final long[] firstTokenNanos = new long[operations];
+            final long[] totalNanos = new long[operations];
+            List<Future<Boolean>> results = new ArrayList<>(operations);
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                final int index = i;
+                final String text = CORPUS[random.nextInt(CORPUS.length)];
+                results.add(pool.submit(() -> runOperation(config, text, index, translateNanos, firstTokenNanos, totalNanos)));
+            }
+
+            // 2. Collect
+            int failures = 0;
+            for (Future<Boolean> result : results) {
+                try {
+                    if (!result.get()) failures++;
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                    failures++;
+                }
+            }
+            long wall = System.nanoTime() - start;
+
+            Report report = new Report();
+            report.operations = operations;
+            report.failures = failures;
+            report.requests = server.getRequestCount();
+            report.serverErrors = server.getErrorCount();
+            report.wallSeconds = wall / 1e9;
+            report.throughput = operations / report.wallSeconds;
+            report.translateP50 = percentileMs(translateNanos, 0.50);
+            report.translateP95 = percentileMs(translateNanos, 0.95);
+            report.translateP99 = percentileMs(translateNanos, 0.99);
+            report.firstTokenP50 = percentileMs(firstTokenNanos, 0.50);
+            report.firstTokenP95 = percentileMs(firstTokenNanos, 0.95);
+            report.firstTokenP99 = percentileMs(firstTokenNanos, 0.99);
+            report.totalP50 = percentileMs(totalNanos, 0.50);
+            report.totalP95 = percentileMs(totalNanos, 0.95);
+            report.totalP99 = percentileMs(totalNanos, 0.99);
+            return report;
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+            server.stop();
+        }
+    }
+
+    // What the popup does for one capture; a failure is timed like any other operation.
+    private static boolean runOperation(ApiConfig config, String text, int index, long[] translateNanos,
+                                        long[] firstTokenNanos, long[] totalNanos) {
+        final long start = System.nanoTime();
+        String translated = TranslateApi.translate(config, FROM_LANG, TO_LANG, text, null);
+        long translatedAt = System.nanoTime();
+        final long[] firstTokenAt = {0};
+        String refined = translated == null ? null : GeminiApi.refineStreaming(config, translated, TARGET_LANGUAGE, STUB_API_KEY,
+                refinedSoFar -> {
+                    if (firstTokenAt[0] == 0) firstTokenAt[0] = System.nanoTime();
+                }, new HttpTransport.Cancellation());
+        long end = System.nanoTime();
+        // Read after Future.get(), which makes the writes visible
+        translateNanos[index] = translatedAt - start;
+        firstTokenNanos[index] = (firstTokenAt[0] != 0 ? firstTokenAt[0] : end) - start;
+        totalNanos[index] = end - start;
+        return refined != null;
+    }
+
+    // Nearest rank.
+    private static double percentileMs(long[] nanos, double percentile) {
+        long[] sorted = Arrays.copyOf(nanos, nanos.length);
+        if (sorted.length == 0) return 0;
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))] / 1e6;
+    }
+}
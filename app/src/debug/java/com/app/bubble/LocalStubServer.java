@@ -0,0 +1,318 @@
+package com.app.bubble;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A loopback HTTP/1.1 server that answers like the two endpoints the app talks to, for the load
+ * test in DiagnosticsActivity (see LoadTestDriver). Debug builds only.
+ *
+ * - GET  /translate_a/single?...&tl=xx&q=text   -> [[["[xx] text","text",null,null,10]],null,"en"]
+ * - POST /v1beta/models/stub:generateContent?key -> {"candidates":[{"content":{"parts":[{"text":...}]}}]}
+ *   echoing the quoted text of the prompt GeminiApi sends.
+ * - POST /v1beta/models/stub:streamGenerateContent?alt=sse&key -> the same text as server-sent events
+ *   of one word each, TOKEN_INTERVAL_MS apart, in a chunked response.
+ * - HEAD anything (HttpTransport.prewarm)       -> 200, empty.
+ *
+ * Every answer is delayed by latencyMs +/- jitterMs, and errorRate of them are 503s, so retries and
+ * tail latency can be exercised. Connections are kept alive like the real servers do.
+ */
+final class LocalStubServer {
+
+    private static final String TAG = "LocalStubServer";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final String TRANSLATE_PATH = "/translate_a/single";
+    static final String GENERATE_PATH = "/v1beta/models/stub:generateContent";
+    static final String STREAM_GENERATE_PATH = "/v1beta/models/stub:streamGenerateContent";
+    // Generation speed of the streaming answer after the first token
+    private static final long TOKEN_INTERVAL_MS = 20;
+    // Must match the prompt built in GeminiApi.buildRequestBody
+    private static final String PROMPT_TEXT_MARKER = "Here is the text: \"";
+    private static final Pattern WORD = Pattern.compile("\\S+\\s*|\\s+");
+
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final Random random = new Random();
+
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "StubConnection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private ServerSocket serverSocket;
+
+    LocalStubServer(long latencyMs, long jitterMs, double errorRate) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+    }
+
+    /** Binds an ephemeral port on 127.0.0.1 and starts accepting. */
+    synchronized void start() throws IOException {
+        if (serverSocket != null) return;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        final ServerSocket socket = serverSocket;
+        Thread acceptor = new Thread(() -> {
+            while (!socket.isClosed()) {
+                try {
+                    final Socket client = socket.accept();
+                    connections.execute(() -> serve(client));
+                } catch (IOException e) {
+                    if (!socket.isClosed()) e.printStackTrace();
+                }
+            }
+        }, "StubAccept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Log.d(TAG, "Listening on port " + socket.getLocalPort());
+    }
+
+    synchronized void stop() {
+        if (serverSocket == null) return;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        serverSocket = null;
+        connections.shutdownNow();
+    }
+
+    /** For ApiConfig.translateEndpoint. */
+    synchronized String getTranslateUrl() {
+        return baseUrl() + TRANSLATE_PATH;
+    }
+
+    /** For ApiConfig.generateEndpoint (the API key is appended to it). */
+    synchronized String getGenerateUrl() {
+        return baseUrl() + GENERATE_PATH + "?key=";
+    }
+
+    long getRequestCount() { return requests.get(); }
+
+    long getErrorCount() { return errors.get(); }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    // =========================================================
+    // HTTP
+    // =========================================================
+
+    // One connection, any number of requests on it until the client closes it.
+    private void serve(Socket client) {
+        try {
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null || requestLine.isEmpty()) break;
+                String[] parts = requestLine.split(" ");
+                if (parts.length < 2) break;
+
+                // 1. Headers, then the body (the client always sends a Content-Length)
+                Map<String, String> headers = new HashMap<>();
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+                }
+                String length = headers.get("content-length");
+                byte[] body = readBody(in, length == null ? 0 : Integer.parseInt(length));
+
+                // 2. Answer
+                requests.incrementAndGet();
+                respond(out, parts[0], parts[1], body);
+                if ("close".equalsIgnoreCase(headers.get("connection"))) break;
+            }
+        } catch (SocketException e) {
+            // Client went away
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void respond(OutputStream out, String method, String target, byte[] body) throws IOException {
+        if (method.equals("HEAD")) {
+            writeResponse(out, 200, "OK", null, true);
+            return;
+        }
+        sleep(latencyMs + (jitterMs > 0 ? nextLong(2 * jitterMs + 1) - jitterMs : 0));
+
+        if (nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            writeResponse(out, 503, "Service Unavailable", "{\"error\":{\"code\":503,\"message\":\"stub error\"}}", false);
+            return;
+        }
+        int query = target.indexOf('?');
+        String path = query < 0 ? target : target.substring(0, query);
+        Map<String, String> params = parseQuery(query < 0 ? "" : target.substring(query + 1));
+        try {
+            if (method.equals("GET") && path.equals(TRANSLATE_PATH)) {
+                writeResponse(out, 200, "OK", translateResponse(params), false);
+            } else if (method.equals("POST") && path.equals(GENERATE_PATH)) {
+                writeResponse(out, 200, "OK", generateResponse(promptText(new String(body, UTF_8))), false);
+            } else if (method.equals("POST") && path.equals(STREAM_GENERATE_PATH)) {
+                writeEventStream(out, promptText(new String(body, UTF_8)));
+            } else {
+                writeResponse(out, 404, "Not Found", "{}", false);
+            }
+        } catch (JSONException e) {
+            writeResponse(out, 400, "Bad Request", "{}", false);
+        }
+    }
+
+    private static void writeResponse(OutputStream out, int code, String reason, String json, boolean head) throws IOException {
+        byte[] bytes = json == null ? new byte[0] : json.getBytes(UTF_8);
+        String headers = "HTTP/1.1 " + code + " " + reason + "\r\n"
+                + "Content-Type: application/json; charset=utf-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: keep-alive\r\n"
+                + "\r\n";
+        out.write(headers.getBytes(UTF_8));
+        if (!head) out.write(bytes);
+        out.flush();
+    }
+
+    // =========================================================
+    // Response bodies
+    // =========================================================
+
+    private static String translateResponse(Map<String, String> params) throws JSONException {
+        String text = params.containsKey("q") ? params.get("q") : "";
+        JSONArray sentence = new JSONArray();
+        sentence.put("[" + params.get("tl") + "] " + text).put(text).put(JSONObject.NULL).put(JSONObject.NULL).put(10);
+        JSONArray sentences = new JSONArray().put(sentence);
+        return new JSONArray().put(sentences).put(JSONObject.NULL).put(params.get("sl")).toString();
+    }
+
+    // The text GeminiApi asked to refine, which the stub "refines" into itself.
+    private static String promptText(String requestBody) throws JSONException {
+        String prompt = new JSONObject(requestBody).getJSONArray("contents").getJSONObject(0)
+                .getJSONArray("parts").getJSONObject(0).getString("text");
+        int marker = prompt.lastIndexOf(PROMPT_TEXT_MARKER);
+        String text = marker < 0 ? prompt : prompt.substring(marker + PROMPT_TEXT_MARKER.length());
+        if (text.endsWith("\"")) text = text.substring(0, text.length() - 1);
+        return text;
+    }
+
+    private static String generateResponse(String text) throws JSONException {
+        JSONObject part = new JSONObject().put("text", text);
+        JSONObject content = new JSONObject().put("parts", new JSONArray().put(part)).put("role", "model");
+        JSONObject candidate = new JSONObject().put("content", content).put("finishReason", "STOP");
+        return new JSONObject().put("candidates", new JSONArray().put(candidate)).toString();
+    }
+
+    // One event per word (with its trailing whitespace), each one HTTP chunk so the client sees it at once.
+    private static void writeEventStream(OutputStream out, String text) throws IOException, JSONException {
+        String headers = "HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/event-stream\r\n"
+                + "Transfer-Encoding: chunked\r\n"
+                + "Connection: keep-alive\r\n"
+                + "\r\n";
+        out.write(headers.getBytes(UTF_8));
+        Matcher words = WORD.matcher(text);
+        boolean first = true;
+        while (words.find()) {
+            if (!first) sleep(TOKEN_INTERVAL_MS);
+            first = false;
+            writeChunk(out, "data: " + generateResponse(words.group()) + "\r\n\r\n");
+        }
+        out.write("0\r\n\r\n".getBytes(UTF_8));
+        out.flush();
+    }
+
+    private static void writeChunk(OutputStream out, String chunk) throws IOException {
+        byte[] bytes = chunk.getBytes(UTF_8);
+        out.write((Integer.toHexString(bytes.length) + "\r\n").getBytes(UTF_8));
+        out.write(bytes);
+        out.write("\r\n".getBytes(UTF_8));
+        out.flush();
+    }
+
+    // =========================================================
+    // Helpers
+    // =========================================================
+
+    // A CRLF (or LF) terminated line, or null at the end of the stream.
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            if (b != '\r') line.write(b);
+        }
+        if (b == -1 && line.size() == 0) return null;
+        return new String(line.toByteArray(), UTF_8);
+    }
+
+    private static byte[] readBody(InputStream in, int length) throws IOException {
+        byte[] body = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(body, read, length - read);
+            if (n < 0) throw new IOException("Truncated body");
+            read += n;
+        }
+        return body;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    private synchronized long nextLong(long bound) {
+        return (long) (random.nextDouble() * bound);
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
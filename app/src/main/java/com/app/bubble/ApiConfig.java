@@ -0,0 +1,28 @@
+package com.app.bubble;
+
+/**
+ * Where one translate or refine call sends its requests, and whether it goes through the caches
+ * (TranslationCache, GeminiApi's refined chunks).
+ *
+ * Passed along with each call instead of being process-wide state, so a load test aimed at a
+ * LocalStubServer never redirects (or skips the cache for) the service's own translations
+ * running at the same time. Immutable.
+ */
+final class ApiConfig {
+
+    /** The real endpoints, caches on. */
+    static final ApiConfig DEFAULT = new ApiConfig(TranslateApi.DEFAULT_ENDPOINT, GeminiApi.DEFAULT_ENDPOINT, true);
+
+    /** Same response format as translate_a/single. */
+    final String translateEndpoint;
+    /** A generateContent URL ending in "key=". */
+    final String generateEndpoint;
+    /** False: nothing is looked up or stored (a load test measures the network path). */
+    final boolean cachesEnabled;
+
+    ApiConfig(String translateEndpoint, String generateEndpoint, boolean cachesEnabled) {
+        this.translateEndpoint = translateEndpoint;
+        this.generateEndpoint = generateEndpoint;
+        this.cachesEnabled = cachesEnabled;
+    }
+}
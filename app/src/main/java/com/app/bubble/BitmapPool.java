@@ -0,0 +1,244 @@
+package com.app.bubble;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shared pool of reusable ARGB_8888 bitmaps and int[] pixel arrays for the
+ * capture -> stitch -> OCR path.
+ * Bitmaps are bucketed by exact size (crops of one selection repeat the same size),
+ * arrays by power-of-two length. Idle objects are kept within a byte budget and the
+ * least recently returned ones are dropped first.
+ *
+ * Borrowed objects are NOT cleared: callers are expected to overwrite every pixel they read.
+ *
+ * Bytes in use counts what the pool handed out and has not got back, tracked by identity:
+ * releasing twice, or releasing an object the pool never lent, does not change it, and a
+ * borrowed object that is dropped without release() stops counting once it is collected.
+ */
+public class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+
+    private static BitmapPool instance;
+
+    private final long maxPooledBytes;
+
+    private final Map<Long, ArrayDeque<Bitmap>> bitmapBuckets = new HashMap<>();
+    private final Map<Integer, ArrayDeque<int[]>> arrayBuckets = new HashMap<>();
+    // Idle objects in the order they were returned (oldest first), for budget eviction.
+    private final ArrayDeque<Object> idleOrder = new ArrayDeque<>();
+    // Borrowed objects -> their size in bytes. Bitmap and int[] both compare by identity.
+    private final WeakHashMap<Object, Long> borrowed = new WeakHashMap<>();
+
+    // --- Counters ---
+    private long pooledBytes = 0;   // Idle, waiting in the pool
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    private BitmapPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            // An eighth of the heap: enough for a handful of screen-sized frames on mid-range phones.
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return instance;
+    }
+
+    // =========================================================
+    // Bitmaps
+    // =========================================================
+
+    /**
+     * Borrows a mutable ARGB_8888 bitmap of exactly width x height.
+     * Contents are undefined.
+     */
+    public synchronized Bitmap acquireBitmap(int width, int height) {
+        ArrayDeque<Bitmap> bucket = bitmapBuckets.get(bitmapKey(width, height));
+        Bitmap bitmap = null;
+        while (bucket != null && !bucket.isEmpty() && bitmap == null) {
+            Bitmap candidate = bucket.pollLast();
+            idleOrder.remove(candidate);
+            pooledBytes -= bitmapBytes(candidate);
+            if (!candidate.isRecycled()) bitmap = candidate;
+        }
+
+        if (bitmap != null) {
+            hits++;
+        } else {
+            misses++;
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        borrowed.put(bitmap, bitmapBytes(bitmap));
+        return bitmap;
+    }
+
+    /**
+     * Returns a bitmap obtained from acquireBitmap(). Bitmaps that were not
+     * allocated by the pool may be passed too; they are adopted if they fit.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null) return;
+        borrowed.remove(bitmap);
+        if (bitmap.isRecycled()) return;
+        long bytes = bitmapBytes(bitmap);
+
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888 || bytes > maxPooledBytes / 2) {
+            bitmap.recycle();
+            return;
+        }
+
+        long key = bitmapKey(bitmap.getWidth(), bitmap.getHeight());
+        ArrayDeque<Bitmap> bucket = bitmapBuckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            bitmapBuckets.put(key, bucket);
+        }
+        if (bucket.contains(bitmap)) return; // Double release
+        bucket.addLast(bitmap);
+        idleOrder.addLast(bitmap);
+        pooledBytes += bytes;
+        trimToBudget(maxPooledBytes);
+    }
+
+    // =========================================================
+    // Pixel arrays
+    // =========================================================
+
+    /**
+     * Borrows an int[] of at least minLength elements (rounded up to a power of two).
+     * Contents are undefined.
+     */
+    public synchronized int[] acquireArray(int minLength) {
+        int length = bucketLength(minLength);
+        ArrayDeque<int[]> bucket = arrayBuckets.get(length);
+        int[] array = null;
+        if (bucket != null && !bucket.isEmpty()) {
+            array = bucket.pollLast();
+            idleOrder.remove(array);
+            pooledBytes -= arrayBytes(array);
+            hits++;
+        } else {
+            misses++;
+            array = new int[length];
+        }
+        borrowed.put(array, arrayBytes(array));
+        return array;
+    }
+
+    public synchronized void release(int[] array) {
+        if (array == null) return;
+        borrowed.remove(array);
+        long bytes = arrayBytes(array);
+
+        // Only power-of-two arrays came from this pool.
+        if (Integer.bitCount(array.length) != 1 || bytes > maxPooledBytes / 2) return;
+
+        ArrayDeque<int[]> bucket = arrayBuckets.get(array.length);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            arrayBuckets.put(array.length, bucket);
+        }
+        if (bucket.contains(array)) return; // Double release
+        bucket.addLast(array);
+        idleOrder.addLast(array);
+        pooledBytes += bytes;
+        trimToBudget(maxPooledBytes);
+    }
+
+    // =========================================================
+    // Budget & stats
+    // =========================================================
+
+    /**
+     * Drops idle objects until at most targetBytes remain pooled. 0 empties the pool.
+     * Called from onTrimMemory().
+     */
+    public synchronized void trimToSize(long targetBytes) {
+        trimToBudget(Math.max(0, targetBytes));
+        Log.d(TAG, getStatsString());
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized long getHitCount() { return hits; }
+
+    public synchronized long getMissCount() { return misses; }
+
+    /** Bytes borrowed and not returned yet. */
+    public synchronized long getBytesInUse() {
+        long bytes = 0;
+        for (Long size : borrowed.values()) bytes += size;
+        return bytes;
+    }
+
+    public synchronized long getPooledBytes() { return pooledBytes; }
+
+    public synchronized long getEvictionCount() { return evictions; }
+
+    public synchronized String getStatsString() {
+        long total = hits + misses;
+        int hitRate = total == 0 ? 0 : (int) (hits * 100 / total);
+        return "hits=" + hits + " misses=" + misses + " (" + hitRate + "%)"
+                + " inUse=" + (getBytesInUse() / 1024) + "KB pooled=" + (pooledBytes / 1024) + "KB"
+                + " evictions=" + evictions;
+    }
+
+    private void trimToBudget(long budget) {
+        while (pooledBytes > budget && !idleOrder.isEmpty()) {
+            Object oldest = idleOrder.pollFirst();
+            if (oldest instanceof Bitmap) {
+                Bitmap bitmap = (Bitmap) oldest;
+                removeFromBucket(bitmapBuckets.get(bitmapKey(bitmap.getWidth(), bitmap.getHeight())), bitmap);
+                pooledBytes -= bitmapBytes(bitmap);
+                bitmap.recycle();
+            } else {
+                int[] array = (int[]) oldest;
+                removeFromBucket(arrayBuckets.get(array.length), array);
+                pooledBytes -= arrayBytes(array);
+            }
+            evictions++;
+        }
+    }
+
+    private static <T> void removeFromBucket(ArrayDeque<T> bucket, T item) {
+        if (bucket == null) return;
+        Iterator<T> it = bucket.iterator();
+        while (it.hasNext()) {
+            if (it.next() == item) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private static long bitmapKey(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    private static long bitmapBytes(Bitmap bitmap) {
+        return (long) bitmap.getWidth() * bitmap.getHeight() * 4;
+    }
+
+    private static long arrayBytes(int[] array) {
+        return (long) array.length * 4;
+    }
+
+    private static int bucketLength(int minLength) {
+        if (minLength <= 1) return 1;
+        int highest = Integer.highestOneBit(minLength - 1) << 1;
+        return highest > 0 ? highest : minLength;
+    }
+}
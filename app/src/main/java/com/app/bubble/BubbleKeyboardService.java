@@ -11,6 +11,7 @@ import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.ImageButton;
@@ -18,6 +19,8 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.app.bubble.core.StitchWorkers;
+
 import java.util.List;
 
 /**
@@ -73,6 +76,19 @@ public class BubbleKeyboardService extends InputMethodService implements Keyboar
         }
     };
 
+    @Override
+    public void onStartInputView(EditorInfo info, boolean restarting) {
+        super.onStartInputView(info, restarting);
+        // Keep scroll-capture stitching on one thread while the user is typing
+        StitchWorkers.getInstance().setThrottled(true);
+    }
+
+    @Override
+    public void onFinishInputView(boolean finishingInput) {
+        super.onFinishInputView(finishingInput);
+        StitchWorkers.getInstance().setThrottled(false);
+    }
+
     @Override
     public View onCreateInputView() {
         // 1. Create the Main Container (Vertical)
@@ -0,0 +1,404 @@
+package com.app.bubble;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.app.bubble.core.OverlapFinder;
+import com.app.bubble.core.ScrollStepPlanner;
+import com.app.bubble.core.StreamingStitcher;
+import com.app.bubble.core.TallImage;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Continuous capture while GlobalScrollService is scrolling ("Burst Mode").
+ *
+ * Scroll step settles -> ScreenCaptureSession -> bounded frame queue -> stitch worker -> next step.
+ * - Exactly one frame is taken per scroll step, after the page has stopped moving (no motion blur,
+ *   no half-rendered rows), and the next swipe is only dispatched once that frame is queued.
+ * - When the queue is full the next step waits, so scrolling never outruns stitching on slow devices.
+ * - The overlap measured by the stitcher sets the next swipe distance (ScrollStepPlanner).
+ * - Frames identical to the previous one (page did not move) are skipped before cropping.
+ * - End of content (scroll range exhausted, or END_STILL_STEPS steps in a row that moved nothing
+ *   according to scroll events, identical frames or a near-total overlap) stops the scroll and is
+ *   reported to the listener, which finishes the capture.
+ * - Frames are appended to a StreamingStitcher, so each one is copied once and the result has no height cap.
+ * - stop() lets the worker drain the queue and hands the stitched image to the listener (main thread).
+ */
+public class BurstCaptureController {
+
+    private static final String TAG = "BurstCapture";
+
+    // Frames waiting for the stitcher. Small on purpose: each one is a crop-sized bitmap.
+    private static final int QUEUE_CAPACITY = 3;
+    // Stitched tiles kept on the heap; older ones are spilled to spillDir (~2.9MB each at 1440px).
+    private static final int HOT_TILES = 6;
+    // Retry delay while the frame queue is full
+    private static final long QUEUE_FULL_RETRY_MS = 50;
+    // Consecutive steps without movement that mean the page cannot scroll any further
+    private static final int END_STILL_STEPS = 2;
+    // A step that moved fewer rows than this (overscroll bounce) counts as not moving
+    private static final int END_SCROLL_ROWS = 4;
+
+    public interface Listener {
+        /** Called on the main thread with the stitched result (may be null if nothing was captured). */
+        void onBurstFinished(TallImage stitched);
+
+        /** Called on the main thread, once, when the page stopped scrolling; scrolling is already stopped. */
+        void onEndOfContent();
+    }
+
+    private final ScreenCaptureSession captureSession;
+    private final FrameCropper frameCropper;
+    private final Listener listener;
+    private final File spillDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final BlockingQueue<StepFrame> frameQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private Thread stitchThread;
+
+    private Rect cropRect;
+    private long intervalMs;
+    private boolean running = false;
+    private boolean requestInFlight = false;
+    private long lastStepAt;
+    private ScrollStepPlanner stepPlanner; // Main thread only
+    private int stillSteps = 0;
+    private boolean endAfterFrame = false;
+    private boolean endReported = false;
+    // Swipe made before the frame being captured; written on the main thread before requestFrame()
+    private volatile int pendingSwipe;
+    private volatile boolean stopRequested = false;
+    private volatile boolean cancelled = false;
+
+    // Only touched on the capture thread
+    private long lastSignature = 0;
+    private boolean hasSignature = false;
+
+    // --- Stats ---
+    private int framesQueued = 0;
+    private int framesSkippedDuplicate = 0;
+    private int stepsThrottled = 0;
+
+    // A cropped frame and the swipe distance (pixels) since the previous frame; 0 if unknown.
+    private static final class StepFrame {
+        final Bitmap bitmap;
+        final int swipe;
+
+        StepFrame(Bitmap bitmap, int swipe) {
+            this.bitmap = bitmap;
+            this.swipe = swipe;
+        }
+    }
+
+    public BurstCaptureController(ScreenCaptureSession captureSession, FrameCropper frameCropper,
+                                  File spillDir, Listener listener) {
+        this.captureSession = captureSession;
+        this.frameCropper = frameCropper;
+        this.spillDir = spillDir;
+        this.listener = listener;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts taking one frame of cropRect per GlobalScrollService scroll step, at most one step
+     * every intervalMs. Call before GlobalScrollService.startSmoothScroll(). Main thread only.
+     */
+    public void start(Rect cropRect, long intervalMs) {
+        if (running) return;
+        this.cropRect = new Rect(cropRect);
+        this.intervalMs = intervalMs;
+        running = true;
+        stopRequested = false;
+        cancelled = false;
+        hasSignature = false;
+        frameQueue.clear();
+        stillSteps = 0;
+        endAfterFrame = false;
+        endReported = false;
+        // Swipes between 1/20 and 3/4 of the captured height, starting at a quarter
+        int height = cropRect.height();
+        stepPlanner = new ScrollStepPlanner(height / 4, Math.max(1, height / 20), height * 3 / 4);
+
+        stitchThread = new Thread(stitchLoop, "BurstStitcher");
+        stitchThread.start();
+
+        GlobalScrollService.setStepListener(stepListener);
+        Log.d(TAG, "Burst started, min step interval " + intervalMs + "ms");
+    }
+
+    /**
+     * Stops capturing, grabs one last frame (the page as it is now), stitches whatever is
+     * still queued and reports the result. Main thread only.
+     */
+    public void stop() {
+        if (!running) return;
+        running = false;
+        GlobalScrollService.setStepListener(null);
+        mainHandler.removeCallbacks(captureStep);
+        mainHandler.removeCallbacks(advance);
+        if (cancelled) {
+            stopRequested = true;
+        } else {
+            captureSession.requestFrame(finalFrameCallback, false);
+        }
+        Log.d(TAG, "Burst stopped: queued=" + framesQueued + " duplicates=" + framesSkippedDuplicate
+                + " throttled=" + stepsThrottled);
+    }
+
+    /**
+     * Stops without delivering a result; queued frames go back to the pool.
+     */
+    public void cancel() {
+        cancelled = true;
+        stop();
+        if (stitchThread != null) stitchThread.interrupt();
+    }
+
+    // =========================================================
+    // Capture side
+    // =========================================================
+
+    private final GlobalScrollService.StepListener stepListener = new GlobalScrollService.StepListener() {
+        @Override
+        public void onStepSettled(int distance, int motion) {
+            if (!running) return;
+            if (distance > 0 && motion == GlobalScrollService.MOTION_NONE) {
+                // Nothing moved, so there is no new frame to take
+                onStepStill();
+                if (!endReported) scheduleNextStep();
+                return;
+            }
+            // Last stretch of the page: take it, then finish
+            endAfterFrame = motion == GlobalScrollService.MOTION_AT_END;
+            pendingSwipe = distance;
+            captureStep.run();
+        }
+    };
+
+    // The page is at rest: take its frame, once the stitcher has room for it
+    private final Runnable captureStep = new Runnable() {
+        @Override
+        public void run() {
+            if (!running || requestInFlight) return;
+            if (frameQueue.remainingCapacity() == 0) {
+                // Backpressure: the stitcher is behind, the page stays where it is until it catches up.
+                stepsThrottled++;
+                mainHandler.postDelayed(this, QUEUE_FULL_RETRY_MS);
+                return;
+            }
+            requestInFlight = true;
+            captureSession.requestFrame(frameCallback, false);
+        }
+    };
+
+    private final ScreenCaptureSession.FrameCallback frameCallback = new ScreenCaptureSession.FrameCallback() {
+        @Override
+        public void onFrame(Image image) {
+            try {
+                if (!stopRequested) enqueueFrame(image, 0, pendingSwipe);
+            } finally {
+                mainHandler.post(frameTaken);
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            e.printStackTrace();
+            mainHandler.post(frameTaken);
+        }
+    };
+
+    // Frame is in the queue: on to the next step
+    private final Runnable frameTaken = new Runnable() {
+        @Override
+        public void run() {
+            requestInFlight = false;
+            if (!running || endReported) return;
+            if (endAfterFrame) {
+                reportEndOfContent();
+                return;
+            }
+            scheduleNextStep();
+        }
+    };
+
+    // Scroll on, no sooner than intervalMs after the previous step
+    private void scheduleNextStep() {
+        long wait = lastStepAt + intervalMs - SystemClock.uptimeMillis();
+        mainHandler.postDelayed(advance, Math.max(0, wait));
+    }
+
+    private final Runnable advance = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) return;
+            lastStepAt = SystemClock.uptimeMillis();
+            GlobalScrollService.nextStep(stepPlanner.getNextStep());
+        }
+    };
+
+    // Main thread: a step did not move the page
+    private void onStepStill() {
+        if (++stillSteps >= END_STILL_STEPS) reportEndOfContent();
+    }
+
+    private void reportEndOfContent() {
+        if (!running || endReported) return;
+        endReported = true;
+        Log.d(TAG, "End of content after " + framesQueued + " frames");
+        GlobalScrollService.stopScroll();
+        mainHandler.removeCallbacks(advance);
+        listener.onEndOfContent();
+    }
+
+    // Any thread: verdict on one scroll step, from the frame it produced
+    private void postStepMoved(final boolean moved) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (moved) {
+                    stillSteps = 0;
+                } else {
+                    onStepStill();
+                }
+            }
+        });
+    }
+
+    // Main thread: the stitcher measured how far the page moved for a swipe
+    private void onStepMeasured(final int swipe, final OverlapFinder.Result overlap, final int frameHeight) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (stepPlanner != null) stepPlanner.onStepMeasured(swipe, overlap, frameHeight);
+            }
+        });
+    }
+
+    private final ScreenCaptureSession.FrameCallback finalFrameCallback = new ScreenCaptureSession.FrameCallback() {
+        @Override
+        public void onFrame(Image image) {
+            try {
+                // Last frame must not be dropped: wait for the stitcher to make room.
+                enqueueFrame(image, 1000, 0);
+            } finally {
+                stopRequested = true;
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            e.printStackTrace();
+            stopRequested = true;
+        }
+    };
+
+    // Capture thread only
+    private void enqueueFrame(Image image, long waitMs, int swipe) {
+        // Skip frames that match the previous one (scroll has not moved the page).
+        long signature = frameCropper.signature(image, cropRect);
+        if (hasSignature && signature == lastSignature) {
+            framesSkippedDuplicate++;
+            if (swipe > 0) postStepMoved(false);
+            return;
+        }
+        lastSignature = signature;
+        hasSignature = true;
+
+        Bitmap frame = frameCropper.crop(image, cropRect);
+        if (frame == null) return;
+        boolean queued;
+        try {
+            queued = frameQueue.offer(new StepFrame(frame, swipe), waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            queued = false;
+        }
+        if (queued) {
+            framesQueued++;
+        } else {
+            frameCropper.release(frame);
+        }
+    }
+
+    // =========================================================
+    // Stitch side
+    // =========================================================
+
+    private final Runnable stitchLoop = new Runnable() {
+        @Override
+        public void run() {
+            // Frames are copied into the stitcher's tiles. The last kept frame is read again by
+            // the next append(), so it goes back to the pool one frame later.
+            File spillFile = new File(spillDir, "burst-" + System.currentTimeMillis() + ".tiles");
+            StreamingStitcher stitcher = new StreamingStitcher(spillFile, HOT_TILES);
+            Bitmap heldFrame = null;
+            try {
+                while (!cancelled) {
+                    StepFrame step = frameQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (step == null) {
+                        if (stopRequested) break;
+                        continue;
+                    }
+                    Bitmap frame = step.bitmap;
+                    boolean kept = false;
+                    try {
+                        long start = System.nanoTime();
+                        OverlapFinder.Result overlap = stitcher.append(new ImageStitcher.BitmapPixelSource(frame));
+                        Log.d(TAG, "Appended frame after " + step.swipe + "px swipe: " + overlap + " in "
+                                + (System.nanoTime() - start) / 1000 + "us");
+                        onStepMeasured(step.swipe, overlap, frame.getHeight());
+                        if (step.swipe > 0) {
+                            postStepMoved(!overlap.isMatch() || overlap.scroll >= END_SCROLL_ROWS);
+                        }
+                        kept = !overlap.isDuplicate();
+                    } finally {
+                        if (kept) {
+                            BitmapPool.getInstance().release(heldFrame);
+                            heldFrame = frame;
+                        } else {
+                            BitmapPool.getInstance().release(frame);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // cancel()
+            } catch (OutOfMemoryError | IllegalStateException e) {
+                e.printStackTrace(); // Out of heap or disk: keep what was stitched so far
+            }
+
+            BitmapPool.getInstance().release(heldFrame);
+            StepFrame leftover;
+            while ((leftover = frameQueue.poll()) != null) {
+                BitmapPool.getInstance().release(leftover.bitmap);
+            }
+
+            if (cancelled) {
+                stitcher.release();
+                return;
+            }
+
+            Log.d(TAG, "Stitched " + stitcher.getFramesAppended() + " frames (" + stitcher.getFramesSkipped()
+                    + " duplicates) into " + stitcher.getHeight() + " rows, " + stitcher.getRowsCopied()
+                    + " rows copied, " + stitcher.getTilesSpilled() + " tiles spilled");
+            final TallImage result = stitcher.getHeight() > 0 ? stitcher : null;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onBurstFinished(result);
+                }
+            });
+        }
+    };
+}
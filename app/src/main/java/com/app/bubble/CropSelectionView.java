@@ -27,6 +27,7 @@ public class CropSelectionView extends View {
     private int screenHeight;
     private int screenWidth;
     private static final int SCROLL_THRESHOLD = 150; // Pixels from bottom to trigger scroll
+    private boolean isCapturingScroll = false; // Burst capture running: keep the content untinted
 
     public CropSelectionView(Context context) {
         super(context);
@@ -102,8 +103,10 @@ public class CropSelectionView extends View {
         super.onDraw(canvas);
         selectionRect = getNormalizedRect();
         
-        // Draw the blue fill
-        canvas.drawRect(selectionRect, paint);
+        // Draw the blue fill (not while burst frames are being captured, it would tint the text)
+        if (!isCapturingScroll) {
+            canvas.drawRect(selectionRect, paint);
+        }
         // Draw the border
         canvas.drawRect(selectionRect, borderPaint);
     }
@@ -130,7 +133,8 @@ public class CropSelectionView extends View {
                     // Force the selection to the absolute bottom visually
                     endY = screenHeight; 
                     
-                    // Trigger continuous smooth scrolling
+                    // Trigger continuous smooth scrolling (burst capture first: it paces the scroll steps)
+                    startBurstCapture();
                     GlobalScrollService.startSmoothScroll();
                 } else {
                     // Stop scrolling if finger moves away from edge
@@ -158,6 +162,29 @@ public class CropSelectionView extends View {
         return false;
     }
 
+    // Captures frames while the page scrolls under the selection, so the text below the fold is included.
+    private void startBurstCapture() {
+        if (isCapturingScroll || GlobalScrollService.getInstance() == null) return;
+        if (!(getContext() instanceof FloatingTranslatorService)) return;
+        isCapturingScroll = true;
+
+        RectF normalized = getNormalizedRect();
+        Rect burstRect = new Rect((int) normalized.left, (int) normalized.top, (int) normalized.right, screenHeight);
+        if (burstRect.width() < 10) {
+            burstRect.left = 0;
+            burstRect.right = screenWidth;
+        }
+        ((FloatingTranslatorService) getContext()).onAutoScrollStarted(burstRect);
+    }
+
+    /**
+     * Finishes the selection now, as if the timer had run out (e.g. the scroll reached the end of the page).
+     */
+    public void finishSelection() {
+        autoCloseHandler.removeCallbacks(autoCloseRunnable);
+        autoCloseRunnable.run();
+    }
+
     private void resetAutoCloseTimer() {
         autoCloseHandler.removeCallbacks(autoCloseRunnable);
         autoCloseHandler.postDelayed(autoCloseRunnable, timeoutDuration);
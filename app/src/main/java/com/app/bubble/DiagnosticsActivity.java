@@ -0,0 +1,124 @@
+package com.app.bubble;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.util.Locale;
+
+/**
+ * Shows how well the caches in front of the network and the bitmap pool are doing (since the
+ * app process started), and in debug builds runs the translate-then-refine load test against a
+ * local stub server.
+ */
+public class DiagnosticsActivity extends Activity {
+
+    // Load test settings: roughly what the real endpoints answer in on a good mobile connection
+    private static final int LOAD_TEST_OPERATIONS = 200;
+    private static final int LOAD_TEST_CONCURRENCY = 4;
+    private static final long LOAD_TEST_LATENCY_MS = 120;
+    private static final long LOAD_TEST_JITTER_MS = 60;
+    private static final double LOAD_TEST_ERROR_RATE = 0.02;
+
+    private TextView translationCacheStats;
+    private TextView bitmapPoolStats;
+    private TextView loadTestReport;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        translationCacheStats = findViewById(R.id.translation_cache_stats);
+        findViewById(R.id.clear_translation_cache_button).setOnClickListener(v -> {
+            // Deletes files, keep it off the main thread
+            new Thread(() -> {
+                TranslationCache.getInstance().clear();
+                runOnUiThread(() -> {
+                    Toast.makeText(this, "Cache cleared", Toast.LENGTH_SHORT).show();
+                    showStats();
+                });
+            }).start();
+        });
+
+        bitmapPoolStats = findViewById(R.id.bitmap_pool_stats);
+
+        loadTestReport = findViewById(R.id.load_test_report);
+        final Button runLoadTest = findViewById(R.id.run_load_test_button);
+        if (!LoadTest.AVAILABLE) {
+            findViewById(R.id.load_test_label).setVisibility(View.GONE);
+            loadTestReport.setVisibility(View.GONE);
+            runLoadTest.setVisibility(View.GONE);
+            return;
+        }
+        runLoadTest.setOnClickListener(v -> {
+            runLoadTest.setEnabled(false);
+            loadTestReport.setText(String.format(Locale.US, "Running %d operations, %d at a time...",
+                    LOAD_TEST_OPERATIONS, LOAD_TEST_CONCURRENCY));
+            new Thread(() -> {
+                String result;
+                try {
+                    result = LoadTest.run(LOAD_TEST_OPERATIONS, LOAD_TEST_CONCURRENCY,
+                            LOAD_TEST_LATENCY_MS, LOAD_TEST_JITTER_MS, LOAD_TEST_ERROR_RATE);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    result = "Load test failed: " + e.getMessage();
+                }
+                final String report = result;
+                runOnUiThread(() -> {
+                    loadTestReport.setText(report);
+                    runLoadTest.setEnabled(true);
+                });
+            }).start();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showStats();
+    }
+
+    private void showStats() {
+        TranslationCache cache = TranslationCache.getInstance();
+        long hits = cache.getMemoryHits() + cache.getDiskHits();
+        String stats = String.format(Locale.US,
+                "Hit rate:        %.0f%% (%d of %d)\n"
+                + "Memory hits:     %d\n"
+                + "Disk hits:       %d\n"
+                + "Misses:          %d\n"
+                + "Avg hit:         %.1f ms\n"
+                + "Avg network:     %.0f ms\n"
+                + "Latency saved:   %.1f s\n"
+                + "Memory entries:  %d\n"
+                + "Disk usage:      %d KB",
+                cache.getHitRate() * 100, hits, hits + cache.getMisses(),
+                cache.getMemoryHits(),
+                cache.getDiskHits(),
+                cache.getMisses(),
+                cache.getAverageHitMs(),
+                cache.getAverageNetworkMs(),
+                cache.getSavedMs() / 1000,
+                cache.getMemoryEntries(),
+                cache.getDiskBytes() / 1024);
+        translationCacheStats.setText(stats);
+
+        BitmapPool pool = BitmapPool.getInstance();
+        long poolHits = pool.getHitCount();
+        long poolRequests = poolHits + pool.getMissCount();
+        bitmapPoolStats.setText(String.format(Locale.US,
+                "Hit rate:        %.0f%% (%d of %d)\n"
+                + "Misses:          %d\n"
+                + "In use:          %d KB\n"
+                + "Pooled:          %d KB\n"
+                + "Evictions:       %d",
+                poolRequests == 0 ? 0.0 : poolHits * 100.0 / poolRequests, poolHits, poolRequests,
+                pool.getMissCount(),
+                pool.getBytesInUse() / 1024,
+                pool.getPooledBytes() / 1024,
+                pool.getEvictionCount()));
+    }
+}
@@ -14,10 +14,7 @@ import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
-import android.hardware.display.DisplayManager;
-import android.hardware.display.VirtualDisplay;
 import android.media.Image;
-import android.media.ImageReader;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
 import android.os.Build;
@@ -35,30 +32,27 @@ import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
+import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.app.bubble.core.TallImage;
+
 import com.google.android.gms.ads.AdRequest;
 import com.google.android.gms.ads.AdView;
 import com.google.android.gms.ads.MobileAds;
 
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
-import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.text.Text;
-import com.google.mlkit.vision.text.TextRecognition;
-import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
 
-import java.nio.ByteBuffer;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FloatingTranslatorService extends Service {
 
@@ -83,14 +77,28 @@ public class FloatingTranslatorService extends Service {
     private int closeRegionHeight;
 
     // --- LOGIC VARS ---
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
     private Handler handler = new Handler(Looper.getMainLooper());
+
+    // Pages waiting in front of each pipeline stage
+    private static final int PIPELINE_QUEUE_PAGES = 4;
+    private static final PageJob ACCUMULATOR_JOB = new PageJob(true, null, null, null, "", 0);
+    private final Pipeline<PageJob, CapturedPage, String> pagePipeline = buildPagePipeline();
+    // The job whose result the popup is waiting for (main thread only)
+    private Pipeline.Job<PageJob> popupJob;
     
     private String latestOcrText = ""; 
     private String latestTranslation = "";
+    // The refinement streaming into the popup, if any
+    private RefineRequests.Subscription refineSubscription;
+    // The finished translation, exactly as the refine stage prefetched it (latestTranslation also
+    // holds partial translations and partial refinements). Null while there is nothing to refine.
+    private String refineSource;
+    private String refineLanguage;
     
-    // Manual Copy Accumulator
-    private StringBuilder globalTextAccumulator = new StringBuilder();
+    // Manual Copy Accumulator (pages are appended in order by the pipeline's last stage)
+    private final StringBuilder globalTextAccumulator = new StringBuilder();
+    private final AtomicInteger pendingAccumulatorPages = new AtomicInteger();
+    private final AtomicBoolean finishRequested = new AtomicBoolean();
 
     // Languages
     private String[] languages = {"English", "Spanish", "French", "German", "Hindi", "Bengali", "Marathi", "Telugu", "Tamil", "Malayalam"};
@@ -101,16 +109,22 @@ public class FloatingTranslatorService extends Service {
     // Screen Capture
     private MediaProjectionManager mediaProjectionManager;
     private MediaProjection mediaProjection;
-    private VirtualDisplay virtualDisplay;
-    private ImageReader imageReader;
+    private ScreenCaptureSession captureSession;
+    private final FrameCropper frameCropper = new FrameCropper();
+
+    // OCR: one shared, pre-warmed recognizer
+    private final OcrEngine ocrEngine = new OcrEngine();
     private int screenWidth, screenHeight, screenDensity;
 
-    // Legacy Burst Capture (Used by Blue Bubble internally)
+    // Burst Capture (Blue Bubble selection dragged to the bottom edge while auto-scrolling)
     private List<Bitmap> capturedBitmaps = new ArrayList<>();
     private boolean isBurstMode = false;
-    private long lastCaptureTime = 0;
-    private static final long CAPTURE_INTERVAL_MS = 400; 
+    private BurstCaptureController burstController;
+    static final long CAPTURE_INTERVAL_MS = 400; // Default, see SettingsActivity.KEY_BURST_INTERVAL
     private Rect currentCropRect;
+    // Tall stitched captures are OCR'd in slices of about this many rows
+    private static final int OCR_SLICE_ROWS = 2048;
+    private static final int OCR_SLICE_LOOK_BACK = 256;
 
     @Override
     public IBinder onBind(Intent intent) { return null; }
@@ -135,6 +149,17 @@ public class FloatingTranslatorService extends Service {
 
         showFloatingBubble();
         setupCloseTarget();
+
+        // Spill files of a capture that was interrupted by a crash or kill
+        File[] leftovers = getStitchCacheDir().listFiles();
+        if (leftovers != null) {
+            for (File leftover : leftovers) leftover.delete();
+        }
+    }
+
+    // Stitched scroll captures spill their tiles here (see TileStore)
+    private File getStitchCacheDir() {
+        return new File(getCacheDir(), "stitch");
     }
 
     @Override
@@ -153,15 +178,22 @@ public class FloatingTranslatorService extends Service {
                 int resultCode = intent.getIntExtra("resultCode", Activity.RESULT_CANCELED);
                 Intent data = intent.getParcelableExtra("data");
                 if (mediaProjectionManager != null && resultCode == Activity.RESULT_OK && data != null) {
+                    if (captureSession != null) captureSession.close();
                     mediaProjection = mediaProjectionManager.getMediaProjection(resultCode, data);
                     mediaProjection.registerCallback(new MediaProjection.Callback() {
                         @Override
                         public void onStop() {
                             super.onStop();
                             mediaProjection = null;
-                            if (imageReader != null) imageReader.close();
+                            if (captureSession != null) {
+                                captureSession.close();
+                                captureSession = null;
+                            }
                         }
                     }, handler);
+                    // One long-lived display per projection (Android 14 forbids creating a second one).
+                    captureSession = new ScreenCaptureSession(mediaProjection, screenWidth, screenHeight, screenDensity);
+                    captureSession.open();
                 }
             }
 
@@ -199,145 +231,431 @@ public class FloatingTranslatorService extends Service {
              floatingBubbleView.setVisibility(View.VISIBLE);
         }
 
-        if (mediaProjection != null) {
+        boolean burstRunning = isBurstMode && burstController != null && burstController.isRunning();
+        if (!burstRunning) {
+            // Fast path: the app exposes its text, no screenshot or OCR needed
+            String screenText = readScreenText(selectedRect);
+            if (screenText != null) {
+                isBurstMode = false;
+                releaseCapturedBitmaps();
+                translateText(screenText);
+                return;
+            }
+        }
+
+        if (mediaProjection != null && captureSession != null) {
+            this.currentCropRect = selectedRect;
+            if (burstRunning) {
+                // Scrolled selection: finish the burst, its stitched result goes to OCR
+                burstController.stop();
+                return;
+            }
             // Use Single Shot Mode
             isBurstMode = false;
-            this.currentCropRect = selectedRect;
-            capturedBitmaps.clear();
+            releaseCapturedBitmaps();
             startCapture(selectedRect); // Capture using original method
         } else {
             requestPermissionRestart();
         }
     }
 
-    // Original Capture Logic (Restored)
-    private void startCapture(final Rect cropRect) {
-        if (imageReader != null) return;
+    /**
+     * Called by CropSelectionView when the selection reaches the bottom edge and auto-scroll starts.
+     * Frames are captured continuously and stitched until the selection is finished.
+     */
+    public void onAutoScrollStarted(Rect selectionRect) {
+        if (captureSession == null) return;
+        if (burstController == null) {
+            burstController = new BurstCaptureController(captureSession, frameCropper, getStitchCacheDir(),
+                    new BurstCaptureController.Listener() {
+                @Override
+                public void onBurstFinished(TallImage stitched) {
+                    isBurstMode = false;
+                    releaseCapturedBitmaps();
+                    if (stitched != null) {
+                        performTallImageOcr(stitched);
+                    } else {
+                        Toast.makeText(FloatingTranslatorService.this, "Nothing captured", Toast.LENGTH_SHORT).show();
+                    }
+                }
 
-        imageReader = ImageReader.newInstance(screenWidth, screenHeight, PixelFormat.RGBA_8888, 2);
-        try {
-            virtualDisplay = mediaProjection.createVirtualDisplay("ScreenCapture",
-                    screenWidth, screenHeight, screenDensity,
-                    DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
-                    imageReader.getSurface(), null, null);
-        } catch (Exception e) {
-            e.printStackTrace();
-            requestPermissionRestart();
-            return;
+                @Override
+                public void onEndOfContent() {
+                    // The page cannot scroll further: finish the selection as if the user let go
+                    Toast.makeText(FloatingTranslatorService.this, "End of page reached", Toast.LENGTH_SHORT).show();
+                    if (cropSelectionView != null) {
+                        cropSelectionView.finishSelection();
+                    } else {
+                        burstController.stop();
+                    }
+                }
+            });
         }
+        if (burstController.isRunning()) return;
 
-        imageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
-            @Override
-            public void onImageAvailable(ImageReader reader) {
-                Image image = null;
-                try {
-                    image = reader.acquireLatestImage();
-                    if (image != null) {
-                        Image.Plane[] planes = image.getPlanes();
-                        ByteBuffer buffer = planes[0].getBuffer();
-                        int pixelStride = planes[0].getPixelStride();
-                        int rowStride = planes[0].getRowStride();
-                        int rowPadding = rowStride - pixelStride * screenWidth;
-
-                        Bitmap fullBitmap = Bitmap.createBitmap(screenWidth + rowPadding / pixelStride, screenHeight, Bitmap.Config.ARGB_8888);
-                        fullBitmap.copyPixelsFromBuffer(buffer);
-
-                        // Crop to Blue Box
-                        int left = Math.max(0, cropRect.left);
-                        int top = Math.max(0, cropRect.top);
-                        int width = Math.min(cropRect.width(), fullBitmap.getWidth() - left);
-                        int height = Math.min(cropRect.height(), fullBitmap.getHeight() - top);
-
-                        Bitmap capturedFrame = null;
-                        if (width > 0 && height > 0) {
-                            capturedFrame = Bitmap.createBitmap(fullBitmap, left, top, width, height);
-                        }
-                        fullBitmap.recycle();
+        SharedPreferences prefs = getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        long interval = prefs.getLong(SettingsActivity.KEY_BURST_INTERVAL, CAPTURE_INTERVAL_MS);
 
-                        if (capturedFrame != null) {
-                            capturedBitmaps.add(capturedFrame);
-                        }
+        releaseCapturedBitmaps();
+        isBurstMode = true;
+        burstController.start(selectionRect, interval);
+    }
+
+    /**
+     * Text inside rect from the accessibility tree (see GlobalScrollService.readScreenText), or null
+     * when the user chose OCR only, the accessibility service is off, or the app shows no text there.
+     */
+    private String readScreenText(Rect rect) {
+        SharedPreferences prefs = getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getInt(SettingsActivity.KEY_TEXT_SOURCE, SettingsActivity.TEXT_SOURCE_AUTO) != SettingsActivity.TEXT_SOURCE_AUTO) {
+            return null;
+        }
+        return GlobalScrollService.readScreenText(rect);
+    }
 
-                        stopCapture();
+    // Original Capture Logic (Restored), now served by the persistent capture session
+    private void startCapture(final Rect cropRect) {
+        // Fresh frame: the selection overlay was removed right before this call.
+        captureSession.requestFrame(new ScreenCaptureSession.FrameCallback() {
+            @Override
+            public void onFrame(Image image) {
+                // Crop to Blue Box: only the selected rows/columns are read from the plane
+                final Bitmap frame = frameCropper.crop(image, cropRect);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (frame != null) {
+                            capturedBitmaps.add(frame);
+                        }
                         // Trigger Blue Bubble Processing
                         processBlueBubbleResult();
-                        image.close();
                     }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    stopCapture();
-                }
+                });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        requestPermissionRestart();
+                    }
+                });
             }
-        }, handler);
+        }, true);
     }
 
-    private void stopCapture() {
-        if (virtualDisplay != null) { virtualDisplay.release(); virtualDisplay = null; }
-        if (imageReader != null) { imageReader.close(); imageReader = null; }
+    // Frames still in the list are owned by it; frames handed to OCR are returned by the OCR listener.
+    private void releaseCapturedBitmaps() {
+        for (Bitmap bitmap : capturedBitmaps) BitmapPool.getInstance().release(bitmap);
+        capturedBitmaps.clear();
     }
 
     private void processBlueBubbleResult() {
         if (!capturedBitmaps.isEmpty()) {
-            performTranslationOcr(capturedBitmaps.get(0));
+            performTranslationOcr(capturedBitmaps.remove(0));
         }
     }
 
-    // OCR specifically for Translation (Restored Logic)
-    private void performTranslationOcr(Bitmap bitmap) {
-        InputImage image = InputImage.fromBitmap(bitmap, 0);
-        TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+    // OCR specifically for Translation (Restored Logic), now a job of the page pipeline
+    private void performTranslationOcr(final Bitmap bitmap) {
+        submitPopupJob(CapturedPage.ofBitmap(bitmap));
+    }
 
-        recognizer.process(image)
-            .addOnSuccessListener(new OnSuccessListener<Text>() {
-                @Override
-                public void onSuccess(Text visionText) {
-                    latestOcrText = visionText.getText();
-                    if (latestOcrText != null && !latestOcrText.isEmpty()) {
-                        // GO TO TRANSLATION
-                        translateText(latestOcrText);
-                    } else {
-                        Toast.makeText(FloatingTranslatorService.this, "No text found", Toast.LENGTH_SHORT).show();
-                    }
-                }
-            })
-            .addOnFailureListener(e -> Toast.makeText(FloatingTranslatorService.this, "OCR Failed", Toast.LENGTH_SHORT).show());
+    // A stitched scroll capture; the OCR stage recognizes it in slices (see recognizeTallImage).
+    private void performTallImageOcr(final TallImage image) {
+        submitPopupJob(CapturedPage.ofTallImage(image));
     }
 
+    // Translates text read before (screen text, or the popup's text after a language change).
     private void translateText(final String text) {
-        // Find language codes
-        int srcIndex = -1, targetIndex = -1;
-        for (int i = 0; i < languages.length; i++) {
-            if (languages[i].equals(currentSourceLang)) srcIndex = i;
-            if (languages[i].equals(currentTargetLang)) targetIndex = i;
-        }
-        
-        if (srcIndex == -1 || targetIndex == -1) return;
-        
-        final String srcCode = languageCodes[srcIndex];
-        final String targetCode = languageCodes[targetIndex];
+        submitPopupJob(CapturedPage.ofText(text));
+    }
 
-        // Background Thread for API
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                final String result = TranslateApi.translate(srcCode, targetCode, text);
-                handler.post(new Runnable() {
+    // =========================================================
+    // PAGE PIPELINE: OCR -> translate -> refine
+    // =========================================================
+
+    /**
+     * Runs captured pages through OCR, translation and refinement on stage threads of their own
+     * (see Pipeline), so the pages of a multi-page session overlap: one page is translated while
+     * the next is still in OCR, and the next capture does not wait for either. Each bubble tap is
+     * one job; a new tap (or closing the popup) cancels the job before it. Capture itself is the
+     * producer: ScreenCaptureSession callbacks and the burst controller submit the pages.
+     */
+    private Pipeline<PageJob, CapturedPage, String> buildPagePipeline() {
+        return Pipeline.<PageJob, CapturedPage>builder()
+                .then("ocr", PIPELINE_QUEUE_PAGES, this::recognizePage, this::releasePage)
+                .then("translate", PIPELINE_QUEUE_PAGES, this::translatePage, null)
+                .then("refine", PIPELINE_QUEUE_PAGES, this::prefetchRefine, null)
+                .build(new Pipeline.Listener<PageJob, String>() {
                     @Override
-                    public void run() {
-                        if (result != null) {
-                            latestTranslation = result;
-                            showResultPopup(); // SHOW THE POPUP
+                    public void onResult(Pipeline.Job<PageJob> job, String result) {
+                        if (job.context.accumulate) {
+                            onAccumulatorPageRecognized(result);
                         } else {
-                            Toast.makeText(FloatingTranslatorService.this, "Translation Failed", Toast.LENGTH_SHORT).show();
+                            handler.post(() -> onPopupJobDone(job, result));
+                        }
+                    }
+
+                    @Override
+                    public void onFailed(Pipeline.Job<PageJob> job, String stage, Exception error) {
+                        if (job.context.accumulate) {
+                            handler.post(() -> Toast.makeText(FloatingTranslatorService.this, "No text found", Toast.LENGTH_SHORT).show());
+                            onAccumulatorPageDone();
+                        } else {
+                            handler.post(() -> onPopupJobFailed(job, stage, error));
                         }
                     }
                 });
+    }
+
+    // Main thread. Cancels the translation of the previous tap and starts this one.
+    private void submitPopupJob(CapturedPage page) {
+        String srcCode = languageCode(currentSourceLang);
+        String targetCode = languageCode(currentTargetLang);
+        if (srcCode == null || targetCode == null) {
+            releasePage(page);
+            return;
+        }
+        cancelPopupJob();
+        SharedPreferences prefs = getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        PageJob context = new PageJob(false, srcCode, targetCode, currentTargetLang,
+                prefs.getString(SettingsActivity.KEY_API_KEY, ""), RefineRequests.getInstance().getGeneration());
+        popupJob = pagePipeline.submit(context, page);
+        if (popupJob == null) {
+            releasePage(page);
+            Toast.makeText(this, "Busy, try again", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // Main thread. Drops the popup's job (wherever it is in the pipeline) and its refinement.
+    private void cancelPopupJob() {
+        refineSource = null;
+        if (popupJob != null) {
+            popupJob.cancel();
+            popupJob = null;
+            setTranslationProgress(-1, 0);
+        }
+        cancelRefine();
+    }
+
+    private void onPopupJobDone(Pipeline.Job<PageJob> job, String translation) {
+        if (job != popupJob) return; // Cancelled by a newer tap
+        popupJob = null;
+        setTranslationProgress(-1, 0);
+        latestTranslation = translation;
+        refineSource = translation;
+        refineLanguage = job.context.targetLanguage;
+        updatePopupText();
+    }
+
+    private void onPopupJobFailed(Pipeline.Job<PageJob> job, String stage, Exception error) {
+        if (job != popupJob) return;
+        popupJob = null;
+        setTranslationProgress(-1, 0);
+        String message;
+        if (stage.equals("ocr")) {
+            message = error != null ? "OCR Failed" : "No text found";
+        } else {
+            message = "Translation Failed";
+        }
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+    }
+
+    // --- Stages (pipeline threads) ---
+
+    // OCR stage: the page's text, or null if there is none.
+    private String recognizePage(Pipeline.Job<PageJob> job, final CapturedPage page) throws Exception {
+        String text;
+        if (page.bitmap != null) {
+            Text result = recognizeBitmap(page.bitmap, () -> releasePage(page));
+            text = job.context.accumulate ? accumulatorPageText(result) : result.getText();
+        } else {
+            try {
+                text = page.text != null ? page.text : recognizeTallImage(page.tallImage);
+            } finally {
+                releasePage(page);
             }
+        }
+        return text.trim().isEmpty() ? null : text;
+    }
+
+    // Waits for ML Kit. release frees the bitmap once ML Kit is done with it, which may be after
+    // the wait was interrupted by a cancel.
+    private Text recognizeBitmap(Bitmap bitmap, final Runnable release) throws Exception {
+        Task<Text> task = ocrEngine.process(bitmap);
+        Text result;
+        try {
+            result = Tasks.await(task);
+        } catch (InterruptedException e) {
+            // Default (main thread) listener: the OCR worker may be shut down by then (onDestroy
+            // interrupts the pipeline right before ocrEngine.shutdown()), and BitmapPool is thread safe.
+            task.addOnCompleteListener(t -> release.run());
+            throw e;
+        } catch (Exception e) {
+            release.run();
+            throw e;
+        }
+        release.run();
+        return result;
+    }
+
+    // A stitched scroll capture can be taller than any bitmap ML Kit accepts, so it is recognized
+    // in slices cut at blank rows (between text lines), one after another. The text of the slices
+    // recognized before a failure is kept.
+    private String recognizeTallImage(TallImage image) throws Exception {
+        StringBuilder text = new StringBuilder();
+        int y = 0;
+        try {
+            while (y < image.getHeight()) {
+                int end = Math.min(image.getHeight(), y + OCR_SLICE_ROWS);
+                if (end < image.getHeight()) {
+                    end = Math.max(y + 1, ImageStitcher.findQuietRow(image, end, OCR_SLICE_LOOK_BACK));
+                }
+                final Bitmap slice = ImageStitcher.toBitmap(image, y, end - y);
+                if (slice == null) {
+                    if (text.length() == 0) throw new IllegalStateException("No memory for an OCR slice");
+                    break;
+                }
+                String sliceText = recognizeBitmap(slice, () -> BitmapPool.getInstance().release(slice)).getText();
+                if (!sliceText.isEmpty()) {
+                    if (text.length() > 0) text.append("\n");
+                    text.append(sliceText);
+                }
+                y = end;
+            }
+        } catch (InterruptedException e) {
+            throw e; // Cancelled
+        } catch (Exception e) {
+            if (text.length() == 0) throw e;
+            e.printStackTrace();
+        }
+        return text.toString();
+    }
+
+    // Translate stage. Popup jobs open the popup with the source text first; translated segments
+    // replace it as they arrive. Manual copy pages are passed on as they are.
+    private String translatePage(final Pipeline.Job<PageJob> job, final String text) {
+        if (job.context.accumulate) return text;
+        handler.post(() -> {
+            if (job != popupJob) return;
+            latestOcrText = text;
+            latestTranslation = text;
+            showResultPopup();
+            setTranslationProgress(0, 0);
         });
+        // Interrupted by Job.cancel(): TranslateApi waits for its pooled requests, so it returns null
+        // at once (even for a single segment), and the pipeline drops the job
+        return TranslateApi.translate(job.context.srcCode, job.context.targetCode, text, (partial, done, total) ->
+                handler.post(() -> {
+                    if (job != popupJob) return; // Language changed or a new tap meanwhile
+                    latestTranslation = partial;
+                    updatePopupText();
+                    setTranslationProgress(done, total);
+                }));
+    }
+
+    /**
+     * Refine stage: starts refining the translation in the background as soon as it is shown, so
+     * the refine button usually has the answer ready. Only with an API key (it is the user's quota).
+     */
+    // A job cancelled meanwhile also went through cancelPopupJob(), whose cancelAll() makes
+    // RefineRequests refuse its generation, so no request outlives the popup it was for.
+    private String prefetchRefine(Pipeline.Job<PageJob> job, String translation) {
+        if (job.isCancelled()) return null;
+        if (!job.context.accumulate && !job.context.apiKey.isEmpty()) {
+            RefineRequests.getInstance().prefetch(translation, job.context.targetLanguage, job.context.apiKey,
+                    job.context.refineGeneration);
+        }
+        return translation;
+    }
+
+    private void releasePage(CapturedPage page) {
+        if (page.bitmap != null) frameCropper.release(page.bitmap);
+        if (page.tallImage != null) page.tallImage.release();
+    }
+
+    private String languageCode(String language) {
+        for (int i = 0; i < languages.length; i++) {
+            if (languages[i].equals(language)) return languageCodes[i];
+        }
+        return null;
+    }
+
+    // What a job was submitted for, fixed at the tap (a language change starts a new job).
+    private static final class PageJob {
+        final boolean accumulate; // Manual copy page: OCR only, collected by DONE
+        final String srcCode;
+        final String targetCode;
+        final String targetLanguage;
+        final String apiKey;
+        final int refineGeneration; // RefineRequests.getGeneration() at submit
+
+        PageJob(boolean accumulate, String srcCode, String targetCode, String targetLanguage, String apiKey,
+                int refineGeneration) {
+            this.accumulate = accumulate;
+            this.srcCode = srcCode;
+            this.targetCode = targetCode;
+            this.targetLanguage = targetLanguage;
+            this.apiKey = apiKey;
+            this.refineGeneration = refineGeneration;
+        }
+    }
+
+    // Pipeline input: a cropped frame, a stitched scroll capture, or text read without OCR.
+    private static final class CapturedPage {
+        final Bitmap bitmap;
+        final TallImage tallImage;
+        final String text;
+
+        private CapturedPage(Bitmap bitmap, TallImage tallImage, String text) {
+            this.bitmap = bitmap;
+            this.tallImage = tallImage;
+            this.text = text;
+        }
+
+        static CapturedPage ofBitmap(Bitmap bitmap) { return new CapturedPage(bitmap, null, null); }
+
+        static CapturedPage ofTallImage(TallImage image) { return new CapturedPage(null, image, null); }
+
+        static CapturedPage ofText(String text) { return new CapturedPage(null, null, text); }
+    }
+
+    // Shows latestTranslation in the open popup, without re-inflating it.
+    private void updatePopupText() {
+        if (popupView == null) return;
+        TextView tvTranslated = popupView.findViewById(R.id.popup_translated_text);
+        if (tvTranslated != null) tvTranslated.setText(latestTranslation);
+    }
+
+    /**
+     * Popup progress bar: done of total segments translated (total 0 = not known yet), done < 0 hides it.
+     */
+    private void setTranslationProgress(int done, int total) {
+        if (popupView == null) return;
+        ProgressBar progress = popupView.findViewById(R.id.popup_progress);
+        if (progress == null) return;
+        if (done < 0) {
+            progress.setVisibility(View.GONE);
+            return;
+        }
+        progress.setVisibility(View.VISIBLE);
+        progress.setIndeterminate(total == 0);
+        if (total > 0) {
+            progress.setMax(total);
+            progress.setProgress(done);
+        }
     }
 
     private void showResultPopup() {
-        if (popupView != null) windowManager.removeView(popupView);
+        if (popupView != null) {
+            // Already open (re-translation, copy tool result): only the text changes
+            updatePopupText();
+            setTranslationProgress(-1, 0);
+            return;
+        }
 
         LayoutInflater inflater = LayoutInflater.from(this);
         // FIX: Correct layout name to match your XML
@@ -373,96 +691,122 @@ public class FloatingTranslatorService extends Service {
     // =========================================================
 
     private void manualCaptureForAccumulator(final Rect cropRect) {
-        if (mediaProjection == null) {
+        // Fast path: page text from the accessibility tree (full screen width between the two lines)
+        final String screenText = readScreenText(new Rect(0, cropRect.top, screenWidth, cropRect.bottom));
+        if (screenText != null) {
+            submitAccumulatorPage(CapturedPage.ofText(screenText));
+            return;
+        }
+
+        if (mediaProjection == null || captureSession == null) {
             // FIX for Issue #1: If permission is lost, request it again instead of failing.
             Toast.makeText(this, "Permission lost. Restarting...", Toast.LENGTH_SHORT).show();
             requestPermissionRestart();
             return;
         }
-        stopCapture(); // Ensure cleanup
-
-        imageReader = ImageReader.newInstance(screenWidth, screenHeight, PixelFormat.RGBA_8888, 2);
-        virtualDisplay = mediaProjection.createVirtualDisplay("ManualCapture",
-                screenWidth, screenHeight, screenDensity,
-                DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
-                imageReader.getSurface(), null, null);
 
-        imageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+        pendingAccumulatorPages.incrementAndGet();
+        // The overlay stays on screen, so the latest frame is already what the user sees.
+        captureSession.requestFrame(new ScreenCaptureSession.FrameCallback() {
             @Override
-            public void onImageAvailable(ImageReader reader) {
-                Image image = null;
-                try {
-                    image = reader.acquireLatestImage();
-                    if (image != null) {
-                        Image.Plane[] planes = image.getPlanes();
-                        ByteBuffer buffer = planes[0].getBuffer();
-                        int pixelStride = planes[0].getPixelStride();
-                        int rowPadding = planes[0].getRowStride() - pixelStride * screenWidth;
-
-                        Bitmap fullBitmap = Bitmap.createBitmap(screenWidth + rowPadding / pixelStride, screenHeight, Bitmap.Config.ARGB_8888);
-                        fullBitmap.copyPixelsFromBuffer(buffer);
-
-                        // Strict Crop
-                        int safeTop = Math.max(0, cropRect.top);
-                        int safeHeight = Math.min(cropRect.height(), fullBitmap.getHeight() - safeTop);
-                        
-                        if (safeHeight > 0) {
-                            Bitmap cropped = Bitmap.createBitmap(fullBitmap, 0, safeTop, screenWidth, safeHeight);
-                            fullBitmap.recycle();
-                            processAccumulatorOcr(cropped);
-                        } else {
-                            fullBitmap.recycle();
-                        }
-                        stopCapture();
-                        image.close();
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    stopCapture();
+            public void onFrame(Image image) {
+                // Strict Crop: full screen width between the two lines
+                Bitmap cropped = frameCropper.crop(image, new Rect(0, cropRect.top, screenWidth, cropRect.bottom));
+                if (cropped != null) {
+                    queueAccumulatorPage(CapturedPage.ofBitmap(cropped));
+                } else {
+                    onAccumulatorPageDone();
                 }
             }
-        }, handler);
+
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+                onAccumulatorPageDone();
+            }
+        }, false);
     }
 
-    private void processAccumulatorOcr(Bitmap bitmap) {
-        InputImage image = InputImage.fromBitmap(bitmap, 0);
-        TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+    // Any thread. Pages go through the same pipeline as the popup's, in order, without being cancelled by taps.
+    private void submitAccumulatorPage(CapturedPage page) {
+        pendingAccumulatorPages.incrementAndGet();
+        queueAccumulatorPage(page);
+    }
 
-        recognizer.process(image).addOnSuccessListener(visionText -> {
-            StringBuilder pageText = new StringBuilder();
-            for (Text.TextBlock block : visionText.getTextBlocks()) {
-                String text = block.getText();
-                if (text.contains("ADD PAGE") || text.contains("DONE")) continue;
-                pageText.append(text).append("\n");
-            }
-            if (pageText.length() > 0) {
-                globalTextAccumulator.append(pageText).append("\n\n");
-                Toast.makeText(this, "Text Added", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, "No text found", Toast.LENGTH_SHORT).show();
-            }
-        });
+    // Any thread, the page already counted as pending.
+    private void queueAccumulatorPage(CapturedPage page) {
+        if (pagePipeline.submit(ACCUMULATOR_JOB, page) == null) {
+            releasePage(page);
+            handler.post(() -> Toast.makeText(FloatingTranslatorService.this, "Too many pages waiting", Toast.LENGTH_SHORT).show());
+            onAccumulatorPageDone();
+        }
+    }
+
+    // OCR'd manual copy page, without the overlay's own buttons.
+    private static String accumulatorPageText(Text result) {
+        StringBuilder pageText = new StringBuilder();
+        for (Text.TextBlock block : result.getTextBlocks()) {
+            String text = block.getText();
+            if (text.contains("ADD PAGE") || text.contains("DONE")) continue;
+            pageText.append(text).append("\n");
+        }
+        return pageText.toString();
+    }
+
+    // Last pipeline stage's thread.
+    private void onAccumulatorPageRecognized(String pageText) {
+        synchronized (globalTextAccumulator) {
+            globalTextAccumulator.append(pageText).append("\n\n");
+        }
+        handler.post(() -> Toast.makeText(FloatingTranslatorService.this, "Text Added", Toast.LENGTH_SHORT).show());
+        onAccumulatorPageDone();
+    }
+
+    // Any thread. Runs a deferred DONE once the last outstanding page has been assembled.
+    private void onAccumulatorPageDone() {
+        if (pendingAccumulatorPages.decrementAndGet() == 0 && finishRequested.compareAndSet(true, false)) {
+            ocrEngine.getWorkerExecutor().execute(this::collectAccumulatedText);
+        }
     }
 
     private void finishAndShowResult() {
-        String finalText = globalTextAccumulator.toString().trim();
-        if (finalText.isEmpty()) {
-            Toast.makeText(this, "No text captured.", Toast.LENGTH_SHORT).show();
-            return;
+        finishRequested.set(true);
+        // Pages still in OCR will trigger the collection when they are done.
+        if (pendingAccumulatorPages.get() == 0 && finishRequested.compareAndSet(true, false)) {
+            ocrEngine.getWorkerExecutor().execute(this::collectAccumulatedText);
         }
+    }
 
-        // Copy to clipboard
-        ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-        if (clipboard != null) {
-            ClipData clip = ClipData.newPlainText("Bubble Copy", finalText);
-            clipboard.setPrimaryClip(clip);
+    // OCR worker thread
+    private void collectAccumulatedText() {
+        final String finalText;
+        synchronized (globalTextAccumulator) {
+            finalText = globalTextAccumulator.toString().trim();
+            globalTextAccumulator.setLength(0); // Reset
         }
 
-        // FIX for Issue #7: Remove Debug Activity. Show Result in Popup.
-        latestTranslation = finalText; // Reuse the popup variable to show the result
-        showResultPopup();
-        
-        globalTextAccumulator.setLength(0); // Reset
+        handler.post(() -> {
+            if (finalText.isEmpty()) {
+                Toast.makeText(this, "No text captured.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            // Copy to clipboard
+            ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+            if (clipboard != null) {
+                ClipData clip = ClipData.newPlainText("Bubble Copy", finalText);
+                clipboard.setPrimaryClip(clip);
+            }
+
+            // FIX for Issue #7: Remove Debug Activity. Show Result in Popup.
+            latestTranslation = finalText; // Reuse the popup variable to show the result
+            refineSource = finalText;
+            refineLanguage = currentTargetLang;
+            // Picking a language in the popup translates the collected pages; pages translated
+            // before are served per paragraph from the cache, only new ones are sent.
+            latestOcrText = finalText;
+            showResultPopup();
+        });
     }
 
     // =========================================================
@@ -506,6 +850,9 @@ public class FloatingTranslatorService extends Service {
         bubbleParams.gravity = Gravity.TOP | Gravity.START;
         bubbleParams.y = 100;
         windowManager.addView(floatingBubbleView, bubbleParams);
+
+        // Load the OCR model in the background so the first capture does not pay for it.
+        ocrEngine.warmUp();
         
         floatingBubbleView.setOnTouchListener(new View.OnTouchListener() {
             private int initialX, initialY; private float initialTouchX, initialTouchY; private long lastClickTime = 0;
@@ -536,6 +883,7 @@ public class FloatingTranslatorService extends Service {
                             // FIX for Issue #1: Hide bubble instead of stopSelf()
                             // This keeps permission alive for Copy Tool.
                             floatingBubbleView.setVisibility(View.GONE);
+                            if (captureSession != null) captureSession.pause();
                             Toast.makeText(FloatingTranslatorService.this, "Bubble Hidden. Use Notification to Exit.", Toast.LENGTH_SHORT).show();
                             return true; 
                         }
@@ -551,6 +899,14 @@ public class FloatingTranslatorService extends Service {
 
     private void showCropSelectionTool() {
         if (floatingBubbleView != null) floatingBubbleView.setVisibility(View.GONE);
+        // A new capture: whatever was being translated or refined for the last one is not wanted any more
+        cancelPopupJob();
+        // Re-attach the capture surface while the user is still drawing the box.
+        if (captureSession != null) captureSession.warmUp();
+        // Same for the network: DNS and TLS are done by the time the text is ready.
+        TranslateApi.prewarm();
+        String apiKey = getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE).getString(SettingsActivity.KEY_API_KEY, "");
+        if (!apiKey.isEmpty()) GeminiApi.prewarm();
         cropSelectionView = new CropSelectionView(this);
         int type = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY : WindowManager.LayoutParams.TYPE_PHONE;
         WindowManager.LayoutParams p = new WindowManager.LayoutParams(WindowManager.LayoutParams.MATCH_PARENT, WindowManager.LayoutParams.MATCH_PARENT, type, WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN, PixelFormat.TRANSLUCENT);
@@ -595,6 +951,11 @@ public class FloatingTranslatorService extends Service {
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                     startActivity(intent);
                     hideResultPopup();
+                } else if (item.getItemId() == R.id.action_diagnostics) {
+                    Intent intent = new Intent(FloatingTranslatorService.this, DiagnosticsActivity.class);
+                    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                    startActivity(intent);
+                    hideResultPopup();
                 }
                 return true;
             });
@@ -623,19 +984,47 @@ public class FloatingTranslatorService extends Service {
                 Toast.makeText(this, "No API Key", Toast.LENGTH_SHORT).show();
                 return;
             }
-            Toast.makeText(this, "Refining...", Toast.LENGTH_SHORT).show();
-            executor.execute(() -> {
-                String refined = GeminiApi.refine(latestTranslation, currentTargetLang, apiKey);
-                handler.post(() -> {
-                    if (refined != null) {
-                        latestTranslation = refined;
-                        TextView tv = popupView.findViewById(R.id.popup_translated_text);
-                        tv.setText(latestTranslation);
-                    } else {
-                        Toast.makeText(this, "Refine Failed", Toast.LENGTH_SHORT).show();
-                    }
-                });
-            });
+            if (popupJob != null || refineSource == null) {
+                Toast.makeText(this, "Still translating", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            // Already streaming into the popup: a second tap must not start another request
+            if (refineSubscription != null) return;
+            // Usually already running (or done) since the translation was shown, see the refine stage.
+            // Keyed by the finished translation, never by the text currently on screen.
+            final String original = refineSource;
+            final RefineRequests.Subscription[] subscription = new RefineRequests.Subscription[1];
+            setTranslationProgress(0, 0);
+            subscription[0] = RefineRequests.getInstance().subscribe(original, refineLanguage, apiKey,
+                    new RefineRequests.Listener() {
+                        @Override
+                        public void onPartial(String refinedSoFar) {
+                            // Streamed: the refined text replaces the translation word by word
+                            handler.post(() -> {
+                                if (refineSubscription != subscription[0]) return; // Popup closed or a new translation started
+                                latestTranslation = refinedSoFar;
+                                updatePopupText();
+                            });
+                        }
+
+                        @Override
+                        public void onDone(String refined) {
+                            handler.post(() -> {
+                                if (refineSubscription != subscription[0]) return;
+                                refineSubscription = null;
+                                setTranslationProgress(-1, 0);
+                                if (refined != null) {
+                                    latestTranslation = refined;
+                                } else {
+                                    // Don't leave a half refined text behind
+                                    latestTranslation = original;
+                                    Toast.makeText(FloatingTranslatorService.this, "Refine Failed", Toast.LENGTH_SHORT).show();
+                                }
+                                updatePopupText();
+                            });
+                        }
+                    });
+            refineSubscription = subscription[0];
         });
     }
 
@@ -665,7 +1054,22 @@ public class FloatingTranslatorService extends Service {
         targetSpinner.setOnItemSelectedListener(listener);
     }
 
+    // Stops showing the refinement streaming into the popup; the request itself keeps running.
+    private void cancelRefineSubscription() {
+        if (refineSubscription != null) {
+            refineSubscription.unsubscribe();
+            refineSubscription = null;
+        }
+    }
+
+    // Drops the popup's refinement and every speculative one (their requests are aborted).
+    private void cancelRefine() {
+        cancelRefineSubscription();
+        RefineRequests.getInstance().cancelAll();
+    }
+
     private void hideResultPopup() {
+        cancelPopupJob();
         if (popupView != null) {
             windowManager.removeView(popupView);
             popupView = null;
@@ -673,11 +1077,28 @@ public class FloatingTranslatorService extends Service {
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Drop idle capture/stitch buffers and the OCR model, they are cheap to re-create.
+            BitmapPool.getInstance().clear();
+            ocrEngine.close();
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         sInstance = null;
+        if (burstController != null) burstController.cancel();
+        cancelRefine();
+        pagePipeline.shutdown();
+        if (captureSession != null) captureSession.close();
         if (mediaProjection != null) mediaProjection.stop();
+        releaseCapturedBitmaps();
+        BitmapPool.getInstance().clear();
+        ocrEngine.shutdown();
         if (floatingBubbleView != null) windowManager.removeView(floatingBubbleView);
         if (popupView != null) windowManager.removeView(popupView);
         if (closeTargetView != null) windowManager.removeView(closeTargetView);
@@ -0,0 +1,116 @@
+package com.app.bubble;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads only the selected rectangle out of a captured RGBA_8888 frame.
+ * Instead of copying the whole screen into a Bitmap and cropping it afterwards,
+ * the rows of the crop rect are copied straight from the Image.Plane buffer
+ * (honouring rowStride and pixelStride) into a reused, crop-sized buffer and a bitmap
+ * borrowed from BitmapPool.
+ *
+ * Callers must call release() (or BitmapPool.release()) when OCR is done with the bitmap.
+ */
+public class FrameCropper {
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private ByteBuffer cropBuffer;
+
+    /**
+     * @return a bitmap holding exactly the intersection of cropRect and the frame,
+     *         or null if the intersection is empty.
+     */
+    public synchronized Bitmap crop(Image image, Rect cropRect) {
+        int frameWidth = image.getWidth();
+        int frameHeight = image.getHeight();
+
+        int left = Math.max(0, cropRect.left);
+        int top = Math.max(0, cropRect.top);
+        int right = Math.min(frameWidth, cropRect.right);
+        int bottom = Math.min(frameHeight, cropRect.bottom);
+        int width = right - left;
+        int height = bottom - top;
+        if (width <= 0 || height <= 0) return null;
+
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer source = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        int pixelStride = plane.getPixelStride();
+
+        // 1. Make sure the destination buffer can hold the crop (grow only, never shrink)
+        int needed = width * height * BYTES_PER_PIXEL;
+        if (cropBuffer == null || cropBuffer.capacity() < needed) {
+            cropBuffer = ByteBuffer.allocateDirect(needed);
+        }
+        cropBuffer.clear();
+        cropBuffer.limit(needed);
+
+        // 2. Copy the crop rows. With a packed pixel layout each row is one bulk copy.
+        ByteBuffer src = source.duplicate();
+        if (pixelStride == BYTES_PER_PIXEL) {
+            int rowBytes = width * BYTES_PER_PIXEL;
+            for (int y = top; y < bottom; y++) {
+                int start = y * rowStride + left * pixelStride;
+                src.limit(start + rowBytes);
+                src.position(start);
+                cropBuffer.put(src);
+            }
+        } else {
+            for (int y = top; y < bottom; y++) {
+                int rowStart = y * rowStride;
+                for (int x = left; x < right; x++) {
+                    int p = rowStart + x * pixelStride;
+                    cropBuffer.put(src.get(p));
+                    cropBuffer.put(src.get(p + 1));
+                    cropBuffer.put(src.get(p + 2));
+                    cropBuffer.put(src.get(p + 3));
+                }
+            }
+        }
+        cropBuffer.flip();
+
+        // 3. Upload into a right-sized bitmap (RGBA bytes == ARGB_8888 memory layout)
+        Bitmap target = BitmapPool.getInstance().acquireBitmap(width, height);
+        target.copyPixelsFromBuffer(cropBuffer);
+        return target;
+    }
+
+    /**
+     * Cheap fingerprint of the crop region, sampled straight from the plane without copying.
+     * Two frames with the same signature are treated as identical (the page did not move).
+     */
+    public long signature(Image image, Rect cropRect) {
+        int left = Math.max(0, cropRect.left);
+        int top = Math.max(0, cropRect.top);
+        int right = Math.min(image.getWidth(), cropRect.right);
+        int bottom = Math.min(image.getHeight(), cropRect.bottom);
+        if (right <= left || bottom <= top) return 0;
+
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer source = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        int pixelStride = plane.getPixelStride();
+
+        // Every 8th row, every 16th pixel: ~0.1% of the pixels of a full-screen crop.
+        long hash = 1125899906842597L;
+        for (int y = top; y < bottom; y += 8) {
+            int rowStart = y * rowStride;
+            for (int x = left; x < right; x += 16) {
+                hash = 31 * hash + source.getInt(rowStart + x * pixelStride);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hands a bitmap returned by crop() back to the pool so the next capture can reuse it.
+     */
+    public void release(Bitmap bitmap) {
+        BitmapPool.getInstance().release(bitmap);
+    }
+}
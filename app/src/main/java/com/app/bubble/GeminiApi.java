@@ -1,97 +1,308 @@
 package com.app.bubble;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+import android.util.LruCache;
+
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class GeminiApi {
 
     // The correct endpoint for the Gemini 2.0 Flash model, as you specified.
-    private static final String API_ENDPOINT = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent?key=";
+    static final String DEFAULT_ENDPOINT = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent?key=";
+
+    // Per chunk: far below the model's output limit, and short enough to come back quickly
+    static final int CHUNK_TOKEN_BUDGET = 1000;
+    // Chunks of one text refined at the same time (each is a long-running stream)
+    private static final int MAX_PARALLEL_REFINES = 3;
+    // ~256KB of refined chunks on the heap
+    private static final int CACHE_MAX_CHARS = 128 * 1024;
+
+    private static final ExecutorService refinePool = Executors.newFixedThreadPool(MAX_PARALLEL_REFINES,
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RefineRequest-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // Refined chunks by target language and normalized text
+    private static final LruCache<String, String> refinedChunks = new LruCache<String, String>(CACHE_MAX_CHARS) {
+        @Override
+        protected int sizeOf(String key, String value) {
+            return value.length();
+        }
+    };
 
     // A private constructor because this is a utility class and should not be instantiated.
     private GeminiApi() {}
 
+    /** Opens a pooled connection to the Gemini endpoint ahead of the first refine. */
+    public static void prewarm() {
+        HttpTransport.prewarm(DEFAULT_ENDPOINT);
+    }
+
     /**
      * Sends text to the Gemini API to be refined.
+     * Long texts are refined in chunks (see refineStreaming), blocking until all of them are done.
      * @param textToRefine The raw translated text from the app.
      * @param targetLanguage The language of the text to be refined (e.g., "Malayalam", "Spanish").
      * @param apiKey The user's personal Gemini API key from settings.
      * @return The refined text as a String, or null if an error occurs.
      */
     public static String refine(String textToRefine, String targetLanguage, String apiKey) {
-        try {
-            // 1. Construct the full URL with the user's API key.
-            URL url = new URL(API_ENDPOINT + apiKey);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-
-            // 2. Create a more specific prompt for the AI.
-            // This prompt now explicitly states the target language for refinement to avoid ambiguity.
-            String prompt = "You are an expert language assistant. Your task is to refine the following machine-translated text which is in " + targetLanguage + ". " +
-                "Make it sound more natural, fluent, and grammatically perfect in " + targetLanguage + ", as if a native speaker wrote it. " +
-                "Do not change the original meaning. Only provide the refined text as your answer, with no extra explanations or introductory phrases. " +
-                "Here is the text: \"" + textToRefine + "\"";
-
-            // 3. Build the JSON request body required by the Gemini API.
-            JSONObject part = new JSONObject();
-            part.put("text", prompt);
-
-            JSONArray partsArray = new JSONArray();
-            partsArray.put(part);
-
-            JSONObject content = new JSONObject();
-            content.put("parts", partsArray);
-
-            JSONArray contentsArray = new JSONArray();
-            contentsArray.put(content);
-
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("contents", contentsArray);
-
-            String jsonInputString = requestBody.toString();
-
-            // 4. Send the request to the API.
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonInputString.getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
+        return refineStreaming(ApiConfig.DEFAULT, textToRefine, targetLanguage, apiKey, null, new HttpTransport.Cancellation());
+    }
+
+    /**
+     * Receives the refined text while it is being generated.
+     */
+    public interface RefineListener {
+        /**
+         * Called with all the text received so far, on the calling thread of refineStreaming or,
+         * for a chunked text, on the refine workers (in order).
+         */
+        void onPartial(String refinedSoFar);
+    }
+
+    /**
+     * Same as refine(), but through streamGenerateContent: the answer arrives as server-sent events
+     * of a few tokens each, and listener sees the text grow as they come in, so the first words
+     * show up after the time to first token instead of after the whole answer.
+     *
+     * A text over CHUNK_TOKEN_BUDGET is split at paragraphs into chunks (TextSegmenter.chunk) that
+     * are refined at the same time, at most MAX_PARALLEL_REFINES at once, and stitched back in
+     * order. Refined chunks are cached, so refining an edited text again only sends the chunks
+     * that changed. A chunk that fails keeps its unrefined text.
+     * Blocks until everything is done; call it off the main thread.
+     * @param cancellation Cancel it (e.g. when the popup closes) to drop the requests; null is returned then.
+     * @return The whole refined text, or null if an error occurs (no chunk could be refined) or the request was cancelled.
+     */
+    public static String refineStreaming(String textToRefine, String targetLanguage, String apiKey,
+                                         RefineListener listener, HttpTransport.Cancellation cancellation) {
+        return refineStreaming(ApiConfig.DEFAULT, textToRefine, targetLanguage, apiKey, listener, cancellation);
+    }
 
-            // 5. Read the response from the API.
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), "utf-8"))) {
-                String responseLine = null;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
+    /**
+     * Same as refineStreaming(textToRefine, targetLanguage, apiKey, listener, cancellation), against
+     * config's endpoint and cache setting.
+     */
+    static String refineStreaming(final ApiConfig config, String textToRefine, final String targetLanguage,
+                                  final String apiKey, RefineListener listener,
+                                  final HttpTransport.Cancellation cancellation) {
+        List<TextSegmenter.Segment> chunks = TextSegmenter.chunk(textToRefine, CHUNK_TOKEN_BUDGET);
+        if (chunks.size() <= 1) return refineChunk(config, textToRefine, targetLanguage, apiKey, listener, cancellation);
+
+        // 1. Cached chunks right away, the rest to the refine pool
+        final Progress progress = new Progress(chunks, listener);
+        List<Future<String>> requests = new ArrayList<>(chunks.size());
+        boolean anyCached = false;
+        for (int i = 0; i < chunks.size(); i++) {
+            final int index = i;
+            final String chunkText = chunks.get(i).text;
+            String cached = cachedChunk(config, chunkKey(chunkText, targetLanguage));
+            if (cached != null) {
+                progress.set(index, cached);
+                anyCached = true;
+            }
+            requests.add(cached != null ? null : refinePool.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    String refined = refineChunk(config, chunkText, targetLanguage, apiKey,
+                            refinedSoFar -> progress.update(index, refinedSoFar), cancellation);
+                    progress.complete(index, refined);
+                    return refined;
                 }
+            }));
+        }
+        if (anyCached) progress.report();
+
+        // 2. Wait for the rest
+        int failed = 0;
+        try {
+            for (Future<String> request : requests) {
+                if (request != null && request.get() == null) failed++;
             }
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            cancellation.cancel();
+            return null;
+        }
+        if (cancellation.isCancelled() || failed == chunks.size()) return null;
+        if (failed > 0) Log.w("GeminiApi", failed + " of " + chunks.size() + " chunks left unrefined");
+        return progress.join();
+    }
+
+    // Chunks of one refineStreaming() call, filled in as their streams arrive (any thread).
+    private static final class Progress {
+        private final List<TextSegmenter.Segment> chunks;
+        private final List<String> parts;
+        private final RefineListener listener;
+
+        Progress(List<TextSegmenter.Segment> chunks, RefineListener listener) {
+            this.chunks = chunks;
+            this.listener = listener;
+            parts = new ArrayList<>(chunks.size());
+            for (TextSegmenter.Segment chunk : chunks) parts.add(chunk.text);
+        }
 
-            connection.disconnect();
+        synchronized void set(int index, String refined) {
+            parts.set(index, refined);
+        }
+
+        synchronized void update(int index, String refinedSoFar) {
+            parts.set(index, refinedSoFar);
+            report();
+        }
+
+        // refined is null when the chunk failed; it goes back to its unrefined text.
+        synchronized void complete(int index, String refined) {
+            parts.set(index, refined != null ? refined : chunks.get(index).text);
+            report();
+        }
 
-            // 6. Parse the JSON response to extract the refined text.
-            JSONObject jsonResponse = new JSONObject(response.toString());
-            String refinedText = jsonResponse.getJSONArray("candidates")
-                .getJSONObject(0)
-                .getJSONObject("content")
-                .getJSONArray("parts")
-                .getJSONObject(0)
-                .getString("text");
+        // Under the lock, so listeners see the reports in order (they are expected to just post them).
+        synchronized void report() {
+            if (listener != null) listener.onPartial(join());
+        }
+
+        synchronized String join() {
+            return TextSegmenter.join(chunks, parts);
+        }
+    }
 
-            return refinedText.trim();
+    // One chunk: cache, then one streaming request.
+    private static String refineChunk(ApiConfig config, String textToRefine, String targetLanguage, String apiKey,
+                                      final RefineListener listener, HttpTransport.Cancellation cancellation) {
+        String key = chunkKey(textToRefine, targetLanguage);
+        String cached = cachedChunk(config, key);
+        if (cached != null) return cached;
 
+        final StringBuilder refined = new StringBuilder();
+        try {
+            HttpTransport.postJsonEvents(streamUrl(config.generateEndpoint) + apiKey, buildRequestBody(textToRefine, targetLanguage),
+                    data -> {
+                        // Every event is a complete response object holding the next piece of text
+                        String piece = readCandidateText(new JsonReader(new StringReader(data)));
+                        if (piece == null || piece.isEmpty()) return;
+                        refined.append(piece);
+                        if (listener != null) listener.onPartial(trimLeading(refined));
+                    }, cancellation);
         } catch (Exception e) {
             // If anything goes wrong (invalid API key, network error, etc.), log the error and return null.
             e.printStackTrace();
             return null;
         }
+        if (cancellation.isCancelled() || refined.length() == 0) return null;
+        String result = refined.toString().trim();
+        if (config.cachesEnabled) refinedChunks.put(key, result);
+        return result;
     }
-}
 
+    private static String cachedChunk(ApiConfig config, String key) {
+        return config.cachesEnabled ? refinedChunks.get(key) : null;
+    }
+
+    // Same chunk up to whitespace noise -> same key (as in TranslationCache).
+    private static String chunkKey(String text, String targetLanguage) {
+        return targetLanguage + '\u0000' + TranslationCache.normalize(text);
+    }
+
+    // The prompt wrapped in the JSON body generateContent and streamGenerateContent expect.
+    private static String buildRequestBody(String textToRefine, String targetLanguage) throws JSONException {
+        // Create a more specific prompt for the AI.
+        // This prompt now explicitly states the target language for refinement to avoid ambiguity.
+        String prompt = "You are an expert language assistant. Your task is to refine the following machine-translated text which is in " + targetLanguage + ". " +
+            "Make it sound more natural, fluent, and grammatically perfect in " + targetLanguage + ", as if a native speaker wrote it. " +
+            "Do not change the original meaning. Only provide the refined text as your answer, with no extra explanations or introductory phrases. " +
+            "Here is the text: \"" + textToRefine + "\"";
+
+        JSONObject part = new JSONObject();
+        part.put("text", prompt);
+
+        JSONArray partsArray = new JSONArray();
+        partsArray.put(part);
+
+        JSONObject content = new JSONObject();
+        content.put("parts", partsArray);
+
+        JSONArray contentsArray = new JSONArray();
+        contentsArray.put(content);
+
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("contents", contentsArray);
+        return requestBody.toString();
+    }
+
+    // ".../model:generateContent?key=" -> ".../model:streamGenerateContent?alt=sse&key=" (SSE instead of one JSON array)
+    static String streamUrl(String generateUrl) {
+        return generateUrl.replace(":generateContent?", ":streamGenerateContent?alt=sse&");
+    }
+
+    private static String trimLeading(CharSequence text) {
+        int start = 0;
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) start++;
+        return text.subSequence(start, text.length()).toString();
+    }
+
+    // {"candidates":[{"content":{"parts":[{"text":"..."}]}, ...}], "usageMetadata":{...}}
+    // Returns the text of the first part of the first candidate, or null if there is none.
+    private static String readCandidateText(JsonReader reader) throws IOException {
+        String text = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (text == null && reader.nextName().equals("candidates")) {
+                reader.beginArray();
+                if (reader.hasNext()) text = readFirstPartText(reader, "content");
+                while (reader.hasNext()) reader.skipValue();
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return text;
+    }
+
+    // Walks candidate -> content -> parts[0] -> text.
+    private static String readFirstPartText(JsonReader reader, String contentName) throws IOException {
+        String text = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(contentName) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                text = readFirstPartText(reader, "parts");
+            } else if (name.equals("parts") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (reader.hasNext()) text = readFirstPartText(reader, null);
+                while (reader.hasNext()) reader.skipValue();
+                reader.endArray();
+            } else if (name.equals("text") && reader.peek() == JsonToken.STRING) {
+                text = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return text;
+    }
+}
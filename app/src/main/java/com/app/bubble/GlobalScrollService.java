@@ -4,16 +4,28 @@ import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.GestureDescription;
 import android.content.Intent;
 import android.graphics.Path;
+import android.graphics.Rect;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
 
 /**
  * This service is responsible for performing continuous scroll gestures.
  * It is triggered when the user holds a selection handle at the bottom of the screen.
+ * It also reads on-screen text from the accessibility tree, which lets captures skip OCR.
+ *
+ * Scrolling is a closed loop of steps, never overlapping gestures:
+ * 1. One swipe is dispatched; its completion callback marks the end of the finger motion.
+ * 2. The page is settled once no TYPE_VIEW_SCROLLED event (fling, smooth scroll) arrived for
+ *    SETTLE_QUIET_MS, or after MAX_SETTLE_MS at the latest.
+ * 3. A StepListener (burst capture) grabs a frame and calls nextStep() with the next swipe distance;
+ *    without a listener the next step starts right away.
+ * Scroll events also tell when the page has reached its end; without a listener the loop then
+ * stops by itself, a listener gets MOTION_AT_END / MOTION_NONE and decides.
  */
 public class GlobalScrollService extends AccessibilityService {
 
@@ -21,10 +33,45 @@ public class GlobalScrollService extends AccessibilityService {
     private Handler scrollHandler;
     private boolean isScrolling = false;
 
-    // Defines how fast the scroll repeats (in milliseconds)
-    private static final long SCROLL_INTERVAL = 100; 
+    private boolean gestureInFlight = false;
+    private boolean awaitingSettle = false;
+    private boolean scrolledThisStep = false;
+    private boolean atEndThisStep = false;
+    private boolean scrollEventsSeen = false; // Since startSmoothScroll(): does the app report scrolls at all?
+    private int stillSteps = 0;
+    private int stepDistance = 0; // Pixels; 0 = DEFAULT_STEP_FRACTION of the screen
+    private int lastSwipe = 0; // Pixels actually dragged by the last gesture
+    private StepListener stepListener;
+
     // Defines how long the swipe gesture takes (smoothness)
     private static final int GESTURE_DURATION = 300; 
+    // Page counts as settled after this long without a scroll event (above notificationTimeout)
+    private static final long SETTLE_QUIET_MS = 150;
+    // Upper bound on the settle wait after a swipe
+    private static final long MAX_SETTLE_MS = 1000;
+    // Swipe geometry, as fractions of the screen height
+    private static final float DEFAULT_STEP_FRACTION = 0.20f;
+    private static final float SWIPE_START_FRACTION = 0.85f;
+    private static final float SWIPE_MIN_END_FRACTION = 0.10f;
+    // Self-paced loop stops after this many steps in a row that did not move the page
+    private static final int END_STILL_STEPS = 2;
+
+    // What scroll events said about the last step (see StepListener)
+    public static final int MOTION_UNKNOWN = 0; // The app sends no scroll events (or this is the first report)
+    public static final int MOTION_MOVED = 1;
+    public static final int MOTION_NONE = 2;    // The app reports scrolls, but none for this step
+    public static final int MOTION_AT_END = 3;  // Moved, and is now at the bottom of its scroll range
+
+    /**
+     * Paces the scroll loop. Main thread.
+     */
+    public interface StepListener {
+        /**
+         * The page is at rest. distance is the swipe just made (0 for the state before the first
+         * step) and motion is one of the MOTION_ constants. Call nextStep() to continue.
+         */
+        void onStepSettled(int distance, int motion);
+    }
 
     @Override
     public void onServiceConnected() {
@@ -44,7 +91,17 @@ public class GlobalScrollService extends AccessibilityService {
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        // Not used
+        if (event.getEventType() != AccessibilityEvent.TYPE_VIEW_SCROLLED) return;
+        if (!gestureInFlight && !awaitingSettle) return;
+        scrolledThisStep = true;
+        scrollEventsSeen = true;
+        // The latest event has the final position
+        atEndThisStep = event.getMaxScrollY() > 0 && event.getScrollY() >= event.getMaxScrollY();
+        if (awaitingSettle) {
+            // Still moving (fling): restart the quiet period
+            scrollHandler.removeCallbacks(settleRunnable);
+            scrollHandler.postDelayed(settleRunnable, SETTLE_QUIET_MS);
+        }
     }
 
     @Override
@@ -57,39 +114,145 @@ public class GlobalScrollService extends AccessibilityService {
     }
 
     /**
-     * Starts the continuous scroll loop.
+     * Text shown inside region (screen coordinates) by the app in the foreground, read from the
+     * accessibility tree. Returns null when the service is off or the app exposes no text there
+     * (the caller should OCR a screenshot instead). Main thread.
+     */
+    public static String readScreenText(Rect region) {
+        if (sInstance == null) return null;
+        long start = System.nanoTime();
+        AccessibilityNodeInfo root;
+        try {
+            root = sInstance.getRootInActiveWindow();
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // Window changed while we asked
+            return null;
+        }
+        if (root == null) return null;
+        try {
+            // Our own overlays are never the text the user selected
+            if (root.getPackageName() != null && sInstance.getPackageName().contentEquals(root.getPackageName())) {
+                return null;
+            }
+            String text = ScreenTextReader.read(root, region);
+            Log.d("GlobalScrollService", "Tree text: " + (text == null ? 0 : text.length()) + " chars in "
+                    + (System.nanoTime() - start) / 1000 + "us");
+            return text;
+        } finally {
+            root.recycle();
+        }
+    }
+
+    /**
+     * Sets who paces the scroll loop (null: steps follow each other as soon as the page settles).
+     * Main thread.
+     */
+    public static void setStepListener(StepListener listener) {
+        if (sInstance != null) sInstance.stepListener = listener;
+    }
+
+    /**
+     * Starts the continuous scroll loop. With a StepListener the first call reports the page as
+     * settled, so a frame can be taken before anything moves.
      */
     public static void startSmoothScroll() {
         if (sInstance != null && !sInstance.isScrolling) {
             sInstance.isScrolling = true;
-            sInstance.scrollHandler.post(sInstance.scrollRunnable);
+            sInstance.scrolledThisStep = false;
+            sInstance.scrollEventsSeen = false;
+            sInstance.stillSteps = 0;
+            if (sInstance.stepListener != null) {
+                sInstance.scrollHandler.post(sInstance.reportInitialSettle);
+            } else {
+                sInstance.scrollHandler.post(sInstance.stepRunnable);
+            }
         }
     }
 
+    /**
+     * Continues the loop with a swipe of distance pixels (0 keeps the previous distance).
+     * Ignored unless the loop is running and the page has settled. Main thread.
+     */
+    public static void nextStep(int distance) {
+        if (sInstance == null || !sInstance.isScrolling) return;
+        if (sInstance.gestureInFlight || sInstance.awaitingSettle) return;
+        if (distance > 0) sInstance.stepDistance = distance;
+        sInstance.performScrollGesture();
+    }
+
     /**
      * Stops the continuous scroll loop.
      */
     public static void stopScroll() {
         if (sInstance != null) {
             sInstance.isScrolling = false;
-            sInstance.scrollHandler.removeCallbacks(sInstance.scrollRunnable);
+            sInstance.awaitingSettle = false;
+            sInstance.scrollHandler.removeCallbacks(sInstance.stepRunnable);
+            sInstance.scrollHandler.removeCallbacks(sInstance.settleRunnable);
+            sInstance.scrollHandler.removeCallbacks(sInstance.settleDeadline);
+            sInstance.scrollHandler.removeCallbacks(sInstance.reportInitialSettle);
         }
     }
 
-    // The loop that triggers the swipe repeatedly
-    private Runnable scrollRunnable = new Runnable() {
+    private final Runnable stepRunnable = new Runnable() {
         @Override
         public void run() {
-            if (isScrolling) {
+            if (isScrolling) performScrollGesture();
+        }
+    };
+
+    private final Runnable reportInitialSettle = new Runnable() {
+        @Override
+        public void run() {
+            if (isScrolling && stepListener != null) stepListener.onStepSettled(0, MOTION_UNKNOWN);
+        }
+    };
+
+    // Quiet period over: hand the settled page to the listener, or go on by ourselves
+    private final Runnable settleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!awaitingSettle) return;
+            awaitingSettle = false;
+            scrollHandler.removeCallbacks(settleRunnable);
+            scrollHandler.removeCallbacks(settleDeadline);
+            if (!isScrolling) return;
+            int motion = getStepMotion();
+            if (stepListener != null) {
+                stepListener.onStepSettled(lastSwipe, motion);
+                return;
+            }
+            stillSteps = motion == MOTION_NONE ? stillSteps + 1 : 0;
+            if (motion == MOTION_AT_END || stillSteps >= END_STILL_STEPS) {
+                Log.d("GlobalScrollService", "End of content, stopping");
+                stopScroll();
+            } else {
                 performScrollGesture();
-                // Schedule the next swipe
-                scrollHandler.postDelayed(this, SCROLL_INTERVAL);
             }
         }
     };
 
+    // Endless animations (carousels) keep resetting the quiet period; settle anyway
+    private final Runnable settleDeadline = new Runnable() {
+        @Override
+        public void run() {
+            settleRunnable.run();
+        }
+    };
+
+    private int getStepMotion() {
+        if (atEndThisStep && scrolledThisStep) return MOTION_AT_END;
+        if (scrolledThisStep) return MOTION_MOVED;
+        return scrollEventsSeen ? MOTION_NONE : MOTION_UNKNOWN;
+    }
+
+    private int getStepDistance() {
+        if (stepDistance > 0) return stepDistance;
+        return (int) (getResources().getDisplayMetrics().heightPixels * DEFAULT_STEP_FRACTION);
+    }
+
     /**
-     * Performs a single short vertical swipe.
+     * Performs a single vertical swipe of getStepDistance() pixels; the settle wait starts when it ends.
      */
     private void performScrollGesture() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
@@ -97,13 +260,12 @@ public class GlobalScrollService extends AccessibilityService {
             int width = metrics.widthPixels;
             int height = metrics.heightPixels;
 
-            // Start swipe from 80% down
+            // Start swipe from 85% down, drag up by the step distance
             float startX = width / 2.0f;
-            float startY = height * 0.80f;
+            float startY = height * SWIPE_START_FRACTION;
 
-            // End swipe at 60% down (a short drag)
             float endX = width / 2.0f;
-            float endY = height * 0.60f;
+            float endY = Math.max(height * SWIPE_MIN_END_FRACTION, startY - getStepDistance());
 
             Path path = new Path();
             path.moveTo(startX, startY);
@@ -114,7 +276,37 @@ public class GlobalScrollService extends AccessibilityService {
                     .addStroke(new GestureDescription.StrokeDescription(path, 0, GESTURE_DURATION))
                     .build();
 
-            dispatchGesture(gesture, null, null);
+            scrolledThisStep = false;
+            atEndThisStep = false;
+            lastSwipe = (int) (startY - endY);
+            gestureInFlight = dispatchGesture(gesture, gestureCallback, scrollHandler);
+            if (!gestureInFlight) {
+                Log.d("GlobalScrollService", "Swipe rejected, stopping");
+                isScrolling = false;
+            }
         }
     }
-}
\ No newline at end of file
+
+    private final GestureResultCallback gestureCallback = new GestureResultCallback() {
+        @Override
+        public void onCompleted(GestureDescription gestureDescription) {
+            awaitSettle();
+        }
+
+        @Override
+        public void onCancelled(GestureDescription gestureDescription) {
+            // Another gesture or a real touch interrupted the swipe; the page may still have moved
+            awaitSettle();
+        }
+    };
+
+    private void awaitSettle() {
+        gestureInFlight = false;
+        if (!isScrolling) return;
+        awaitingSettle = true;
+        scrollHandler.removeCallbacks(settleRunnable);
+        scrollHandler.removeCallbacks(settleDeadline);
+        scrollHandler.postDelayed(settleRunnable, SETTLE_QUIET_MS);
+        scrollHandler.postDelayed(settleDeadline, MAX_SETTLE_MS);
+    }
+}
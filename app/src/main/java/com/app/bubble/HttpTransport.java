@@ -0,0 +1,280 @@
+package com.app.bubble;
+
+import android.util.JsonReader;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The one HTTP path TranslateApi and GeminiApi go through.
+ *
+ * - Keep-alive: connections are never disconnect()ed; the body is read to the end and closed, which
+ *   hands the socket back to the platform's connection pool, so the next request to the same host
+ *   skips DNS, TCP and TLS.
+ * - Compression: responses are requested gzip'd and inflated here.
+ * - Timeouts on connect and read, so a dead network fails in seconds instead of hanging a worker.
+ * - Responses are parsed straight off the socket with android.util.JsonReader, no String copy.
+ * - prewarm() resolves and connects to a host ahead of the first real request (bubble tap).
+ * - postJsonEvents() reads a text/event-stream answer event by event, and can be cancelled.
+ */
+public final class HttpTransport {
+
+    private static final String TAG = "HttpTransport";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final int CONNECT_TIMEOUT_MS = 8000;
+    static final int READ_TIMEOUT_MS = 20000;
+    // A host warmed this recently still has a pooled connection
+    private static final long PREWARM_INTERVAL_MS = 60000;
+
+    private static final ExecutorService prewarmExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "HttpPrewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<String, Long> lastWarmed = new HashMap<>();
+
+    /**
+     * Reads the response body.
+     */
+    public interface ResponseParser<T> {
+        T parse(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Receives the data of each server-sent event, as it arrives.
+     */
+    public interface EventHandler {
+        void onEvent(String data) throws IOException;
+    }
+
+    /**
+     * Stops streaming requests from any thread; one Cancellation can cover several requests running
+     * at the same time. Blocked reads are aborted by dropping their connections (they cannot go back
+     * to the pool half read anyway).
+     */
+    public static final class Cancellation {
+        private volatile boolean cancelled = false;
+        private final List<HttpURLConnection> connections = new ArrayList<>();
+
+        public void cancel() {
+            final List<HttpURLConnection> current;
+            synchronized (this) {
+                cancelled = true;
+                current = new ArrayList<>(connections);
+                connections.clear();
+            }
+            if (current.isEmpty()) return;
+            // Closing a TLS socket may write to it, which is not allowed on the main thread
+            new Thread(() -> {
+                for (HttpURLConnection connection : current) connection.disconnect();
+            }, "HttpCancel").start();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        // False if already cancelled: the request should not be sent.
+        private synchronized boolean attach(HttpURLConnection connection) {
+            if (cancelled) return false;
+            connections.add(connection);
+            return true;
+        }
+
+        private synchronized void detach(HttpURLConnection connection) {
+            connections.remove(connection);
+        }
+    }
+
+    // This class is not meant to be instantiated.
+    private HttpTransport() {}
+
+    /** GET url and parse the JSON response. Throws on network errors and non-2xx answers. */
+    public static <T> T get(String url, ResponseParser<T> parser) throws IOException {
+        HttpURLConnection connection = open(url);
+        return execute(connection, null, parser);
+    }
+
+    /** POST a JSON body to url and parse the JSON response. Throws on network errors and non-2xx answers. */
+    public static <T> T postJson(String url, String json, ResponseParser<T> parser) throws IOException {
+        HttpURLConnection connection = open(url);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+        return execute(connection, json.getBytes(UTF_8), parser);
+    }
+
+    /**
+     * POST a JSON body to url and hand every server-sent event of the answer to handler, on the
+     * calling thread, until the stream ends. Returns early (without an exception) once cancellation
+     * is cancelled. Throws on network errors and non-2xx answers.
+     */
+    public static void postJsonEvents(String url, String json, EventHandler handler, Cancellation cancellation) throws IOException {
+        HttpURLConnection connection = open(url);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+        connection.setRequestProperty("Accept", "text/event-stream");
+        if (!cancellation.attach(connection)) return;
+        try {
+            byte[] body = json.getBytes(UTF_8);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int code = connection.getResponseCode();
+            if (code < 200 || code >= 300) {
+                drainAndClose(connection);
+                throw new IOException("HTTP " + code + " from " + connection.getURL().getHost());
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(decode(connection), UTF_8))) {
+                readEvents(reader, handler, cancellation);
+            }
+        } catch (IOException e) {
+            if (!cancellation.isCancelled()) throw e;
+            // Aborted by cancel(): not an error
+        } finally {
+            cancellation.detach(connection);
+        }
+    }
+
+    /**
+     * Resolves the hosts of urls and opens a pooled TLS connection to each, in the background,
+     * so the first real request does not pay for the handshakes. Cheap to call often.
+     */
+    public static void prewarm(final String... urls) {
+        prewarmExecutor.execute(() -> {
+            for (String url : urls) {
+                try {
+                    URL parsed = new URL(url);
+                    String origin = parsed.getProtocol() + "://" + parsed.getAuthority();
+                    long now = System.currentTimeMillis();
+                    synchronized (lastWarmed) {
+                        Long last = lastWarmed.get(origin);
+                        if (last != null && now - last < PREWARM_INTERVAL_MS) continue;
+                        lastWarmed.put(origin, now);
+                    }
+                    long start = System.nanoTime();
+                    InetAddress.getAllByName(parsed.getHost());
+                    // HEAD has no body: the connection is back in the pool as soon as the headers are in
+                    HttpURLConnection connection = open(origin + "/");
+                    connection.setRequestMethod("HEAD");
+                    connection.getResponseCode();
+                    drainAndClose(connection);
+                    Log.d(TAG, "Warmed " + origin + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+                } catch (IOException e) {
+                    // Only an optimization; the real request will report the problem
+                    Log.d(TAG, "Prewarm failed: " + e);
+                }
+            }
+        });
+    }
+
+    // =========================================================
+    // Internals
+    // =========================================================
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        // Set a user-agent to avoid being blocked.
+        connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+        return connection;
+    }
+
+    private static <T> T execute(HttpURLConnection connection, byte[] body, ResponseParser<T> parser) throws IOException {
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+
+        int code = connection.getResponseCode();
+        if (code < 200 || code >= 300) {
+            drainAndClose(connection);
+            throw new IOException("HTTP " + code + " from " + connection.getURL().getHost());
+        }
+
+        InputStream raw = connection.getInputStream();
+        try {
+            InputStream in = "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(raw) : raw;
+            JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+            T result = parser.parse(reader);
+            // Whatever the parser did not need must still be read for the socket to be reusable
+            drain(raw);
+            return result;
+        } finally {
+            raw.close();
+        }
+    }
+
+    private static InputStream decode(HttpURLConnection connection) throws IOException {
+        InputStream raw = connection.getInputStream();
+        return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(raw) : raw;
+    }
+
+    // text/event-stream: "data:" lines accumulate until a blank line ends the event; comments
+    // (":...") and the other fields (event, id, retry) are not used by our servers and are ignored.
+    private static void readEvents(BufferedReader reader, EventHandler handler, Cancellation cancellation) throws IOException {
+        StringBuilder data = new StringBuilder();
+        boolean hasData = false;
+        String line;
+        while (!cancellation.isCancelled() && (line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (hasData) handler.onEvent(data.toString());
+                data.setLength(0);
+                hasData = false;
+            } else if (line.startsWith("data:")) {
+                if (hasData) data.append('\n');
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                hasData = true;
+            }
+        }
+        // A last event without the closing blank line
+        if (hasData && !cancellation.isCancelled()) handler.onEvent(data.toString());
+    }
+
+    // Error bodies are read too, otherwise the connection cannot go back to the pool.
+    private static void drainAndClose(HttpURLConnection connection) {
+        InputStream stream = connection.getErrorStream();
+        try {
+            if (stream == null) stream = connection.getInputStream();
+            drain(stream);
+        } catch (IOException e) {
+            // Nothing to reuse then
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) != -1) {
+            // discard
+        }
+    }
+}
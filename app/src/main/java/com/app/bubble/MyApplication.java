@@ -1,9 +1,13 @@
 package com.app.bubble;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.app.bubble.core.StitchWorkers;
 import com.google.android.gms.ads.MobileAds;
 import com.google.android.gms.ads.initialization.InitializationStatus;
 import com.google.android.gms.ads.initialization.OnInitializationCompleteListener;
+import java.io.File;
 
 public class MyApplication extends Application {
 
@@ -23,5 +27,12 @@ public class MyApplication extends Application {
 
         // Initialize the AppOpenManager to handle "Reopen" ads
         appOpenManager = new AppOpenManager(this);
+
+        // Threads used to stitch scroll captures (Settings > Stitching threads)
+        SharedPreferences prefs = getSharedPreferences(SettingsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        StitchWorkers.getInstance().setParallelism(prefs.getInt(SettingsActivity.KEY_STITCH_THREADS, 0));
+
+        // Finished translations are kept across restarts (see TranslationCache)
+        TranslationCache.getInstance().setDiskDir(new File(getCacheDir(), "translations"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.app.bubble;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the single ML Kit TextRecognizer used by FloatingTranslatorService.
+ * The recognizer is created once, warmed up in the background with a tiny dummy image
+ * (which pays the model-initialization cost before the user's first capture), and closed
+ * on onDestroy or under memory pressure. It is re-created lazily on the next OCR.
+ *
+ * Callers wait for process() off the main thread (the page pipeline's OCR stage blocks on
+ * Tasks.await on its own thread and assembles the text there), so recognition results never
+ * queue behind overlay touches. getWorkerExecutor() is left for work that must not run on a
+ * pipeline thread, such as collecting the accumulated pages.
+ *
+ * Records cold (first) and warm OCR latency so the benefit of warming up is visible.
+ */
+public class OcrEngine {
+
+    private static final String TAG = "OcrEngine";
+
+    private final ExecutorService workerExecutor = Executors.newSingleThreadExecutor();
+
+    private TextRecognizer recognizer;
+    private boolean warmedUp = false;
+    private int inFlight = 0;
+    private boolean closePending = false;
+
+    // --- Stats ---
+    private long coldOcrMs = -1;     // First process() on a fresh recognizer (model init included)
+    private long warmOcrTotalMs = 0;
+    private int warmOcrCount = 0;
+
+    /**
+     * Creates the recognizer (if needed) and runs one throwaway recognition in the background.
+     * Safe to call repeatedly.
+     */
+    public synchronized void warmUp() {
+        if (warmedUp) return;
+        warmedUp = true;
+
+        Bitmap dummy = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+        dummy.eraseColor(Color.WHITE);
+        final long start = SystemClock.elapsedRealtime();
+        run(InputImage.fromBitmap(dummy, 0), start).addOnCompleteListener(new OnCompleteListener<Text>() {
+            @Override
+            public void onComplete(Task<Text> task) {
+                Log.d(TAG, "Warm-up finished in " + (SystemClock.elapsedRealtime() - start) + "ms");
+            }
+        });
+    }
+
+    /**
+     * Runs text recognition on the bitmap with the shared recognizer.
+     */
+    public synchronized Task<Text> process(Bitmap bitmap) {
+        return run(InputImage.fromBitmap(bitmap, 0), SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Releases the native recognizer. If recognitions are still running, it is closed
+     * as soon as the last one completes.
+     */
+    public synchronized void close() {
+        if (recognizer == null) return;
+        if (inFlight > 0) {
+            closePending = true;
+            return;
+        }
+        recognizer.close();
+        recognizer = null;
+        warmedUp = false;
+        closePending = false;
+        Log.d(TAG, "Recognizer closed");
+    }
+
+    /**
+     * Closes the recognizer and stops the worker. The engine cannot be used afterwards.
+     */
+    public void shutdown() {
+        close();
+        workerExecutor.shutdown();
+    }
+
+    /** Single background thread, used for collecting accumulated pages; shut down with the engine. */
+    public Executor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    public synchronized long getColdOcrMs() { return coldOcrMs; }
+
+    public synchronized long getAverageWarmOcrMs() {
+        return warmOcrCount == 0 ? -1 : warmOcrTotalMs / warmOcrCount;
+    }
+
+    private Task<Text> run(InputImage image, final long start) {
+        if (recognizer == null) {
+            recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+            coldOcrMs = -1; // A new recognizer pays initialization again
+        }
+        closePending = false;
+        inFlight++;
+        return recognizer.process(image).addOnCompleteListener(new OnCompleteListener<Text>() {
+            @Override
+            public void onComplete(Task<Text> task) {
+                onRecognitionDone(SystemClock.elapsedRealtime() - start);
+            }
+        });
+    }
+
+    private synchronized void onRecognitionDone(long elapsedMs) {
+        inFlight--;
+        if (coldOcrMs < 0) {
+            coldOcrMs = elapsedMs;
+            Log.d(TAG, "Cold OCR: " + elapsedMs + "ms");
+        } else {
+            warmOcrTotalMs += elapsedMs;
+            warmOcrCount++;
+            Log.d(TAG, "Warm OCR: " + elapsedMs + "ms (avg " + getAverageWarmOcrMs()
+                    + "ms, cold was " + coldOcrMs + "ms, saved ~" + Math.max(0, coldOcrMs - getAverageWarmOcrMs()) + "ms)");
+        }
+        if (closePending && inFlight == 0) {
+            close();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.app.bubble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A chain of typed stages, each with its own worker thread and a bounded queue in front of it.
+ *
+ * Every submitted input belongs to a Job. Stages run one item at a time in submission order, so
+ * while stage N works on one page, stage N+1 already works on the page before it. A full queue
+ * blocks the stage feeding it (back pressure); only the first queue rejects instead, because its
+ * producer is usually the main thread.
+ *
+ * Job.cancel() drops the job's items still queued (handing them to the stage's Discarder),
+ * interrupts the stage working on it, and makes sure nothing of it reaches the Listener.
+ * Stages should therefore treat InterruptedException as "stop", and may also poll isCancelled().
+ *
+ * @param <C> Per-job context, given to every stage (e.g. languages, where the result goes).
+ * @param <I> Input of the first stage.
+ * @param <O> Output of the last stage.
+ */
+final class Pipeline<C, I, O> {
+
+    // How often a stage blocked on a full queue checks whether its job was cancelled
+    private static final long OFFER_POLL_MS = 50;
+
+    /**
+     * One step. Returning null drops the item (reported as a failure without an error).
+     * The stage owns its input: it frees it (if needed) even when it throws or is interrupted.
+     */
+    interface Stage<C, I, O> {
+        O process(Job<C> job, I input) throws Exception;
+    }
+
+    /**
+     * Frees an input that will never be processed (its job was cancelled while it was queued).
+     */
+    interface Discarder<T> {
+        void discard(T value);
+    }
+
+    /**
+     * Where jobs end. Called on the last stage's thread (or the failing stage's), never for a cancelled job.
+     */
+    interface Listener<C, O> {
+        void onResult(Job<C> job, O result);
+
+        /** stage produced nothing for the job; error is null when it simply returned null. */
+        void onFailed(Job<C> job, String stage, Exception error);
+    }
+
+    /**
+     * One input's way through the stages.
+     */
+    static final class Job<C> {
+        final C context;
+        private final Pipeline<C, ?, ?> pipeline;
+        private volatile boolean cancelled = false;
+
+        private Job(Pipeline<C, ?, ?> pipeline, C context) {
+            this.pipeline = pipeline;
+            this.context = context;
+        }
+
+        /** Any thread. Idempotent. */
+        void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            pipeline.interrupt(this);
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Builds a pipeline stage by stage; T is the output type of the stages so far.
+     */
+    static final class Builder<C, I, T> {
+        private final List<Worker> workers;
+
+        private Builder(List<Worker> workers) {
+            this.workers = workers;
+        }
+
+        /**
+         * Appends a stage with queueCapacity inputs waiting in front of it.
+         * @param discarder Frees inputs of cancelled jobs; null when there is nothing to free.
+         */
+        <R> Builder<C, I, R> then(String name, int queueCapacity, Stage<C, T, R> stage, Discarder<T> discarder) {
+            List<Worker> next = new ArrayList<>(workers);
+            next.add(new Worker(name, queueCapacity, stage, discarder));
+            return new Builder<>(next);
+        }
+
+        /** Starts the stage threads. */
+        Pipeline<C, I, T> build(Listener<C, T> listener) {
+            if (workers.isEmpty()) throw new IllegalStateException("A pipeline needs at least one stage");
+            return new Pipeline<>(workers, listener);
+        }
+    }
+
+    private final List<Worker> workers;
+    private final Listener<C, O> listener;
+    private volatile boolean shutdown = false;
+
+    static <C, I> Builder<C, I, I> builder() {
+        return new Builder<>(new ArrayList<Worker>());
+    }
+
+    private Pipeline(List<Worker> workers, Listener<C, O> listener) {
+        this.workers = workers;
+        this.listener = listener;
+        for (int i = 0; i < workers.size(); i++) {
+            Worker worker = workers.get(i);
+            worker.owner = this;
+            worker.next = i + 1 < workers.size() ? workers.get(i + 1) : null;
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues input as a new job. Any thread.
+     * @return The job, or null if the first stage's queue is full or the pipeline is shut down
+     *         (the caller still owns input then).
+     */
+    Job<C> submit(C context, I input) {
+        if (shutdown) return null;
+        Job<C> job = new Job<>(this, context);
+        return workers.get(0).queue.offer(new Item(job, input)) ? job : null;
+    }
+
+    /** Cancels every job and stops the stage threads. */
+    void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) worker.thread.interrupt();
+    }
+
+    // =========================================================
+    // Internals
+    // =========================================================
+
+    // Interrupts the stage working on job, if any. Its queued items are dropped when they come up.
+    private void interrupt(Job<?> job) {
+        for (Worker worker : workers) {
+            synchronized (worker) {
+                if (worker.current == job) worker.thread.interrupt();
+            }
+        }
+    }
+
+    private static final class Item {
+        final Job<?> job;
+        final Object value;
+
+        Item(Job<?> job, Object value) {
+            this.job = job;
+            this.value = value;
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final class Worker implements Runnable {
+        final String name;
+        final BlockingQueue<Item> queue;
+        final Stage stage;
+        final Discarder discarder;
+        final Thread thread;
+        Pipeline owner;
+        Worker next;
+        Job<?> current; // Guarded by this
+
+        Worker(String name, int queueCapacity, Stage stage, Discarder discarder) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.stage = stage;
+            this.discarder = discarder;
+            thread = new Thread(this, "Pipeline-" + name);
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (!owner.shutdown) {
+                Item item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    continue; // Cancelled job (nothing to do while idle) or shutdown
+                }
+                // 1. Claim the job, checking for a cancel under the same lock Job.cancel() takes:
+                //    it either lands before (the item is dropped) or sees `current` and interrupts us.
+                boolean dropped;
+                synchronized (this) {
+                    dropped = item.job.isCancelled() || owner.shutdown;
+                    if (!dropped) current = item.job;
+                }
+                if (dropped) {
+                    discard(item.value);
+                    continue;
+                }
+
+                // 2. Process, interruptible by Job.cancel()
+                Object output = null;
+                Exception error = null;
+                try {
+                    output = stage.process(item.job, item.value);
+                } catch (Exception e) {
+                    error = e;
+                }
+                synchronized (this) {
+                    current = null;
+                    Thread.interrupted(); // A cancel that came in just now must not hit the next item
+                }
+                if (item.job.isCancelled() || owner.shutdown) {
+                    if (next != null && output != null) next.discard(output);
+                    continue;
+                }
+
+                // 3. Hand on
+                if (error != null || output == null) {
+                    if (error != null && !(error instanceof InterruptedException)) error.printStackTrace();
+                    owner.listener.onFailed(item.job, name, error);
+                } else if (next == null) {
+                    owner.listener.onResult(item.job, output);
+                } else {
+                    next.put(new Item(item.job, output));
+                }
+            }
+            // Shut down: free what is left
+            Item item;
+            while ((item = queue.poll()) != null) discard(item.value);
+        }
+
+        // Blocks while the queue is full, unless the item's job is cancelled meanwhile.
+        void put(Item item) {
+            try {
+                while (!queue.offer(item, OFFER_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    if (item.job.isCancelled() || owner.shutdown) {
+                        discard(item.value);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                discard(item.value); // Shutdown
+            }
+        }
+
+        void discard(Object value) {
+            if (discarder != null && value != null) discarder.discard(value);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.app.bubble;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streaming Gemini refinements, shared by text and target language.
+ *
+ * prefetch() starts a refinement nobody is waiting for yet (the popup does it as soon as a
+ * translation is shown); subscribe() joins the one already running for the same text, or
+ * answers at once from the last few finished ones, so the refine button rarely starts a request
+ * of its own and tapping it twice never starts two. cancelAll() aborts everything in flight
+ * (popup dismissed, new capture) and starts a new generation: a prefetch made for an older one
+ * (a translation that finished just as its popup went away) is ignored.
+ *
+ * Thread safe. Listeners are called on a worker thread, or on the caller's thread from
+ * subscribe(), under the lock, so they should just post.
+ */
+final class RefineRequests {
+
+    // Finished refinements kept for a later tap on the button
+    private static final int MAX_COMPLETED = 16;
+
+    private static RefineRequests instance;
+
+    /**
+     * Receives one refinement.
+     */
+    interface Listener {
+        /** All the refined text received so far. */
+        void onPartial(String refinedSoFar);
+
+        /** The whole refined text, or null if it failed. Not called when the refinement is cancelled. */
+        void onDone(String refined);
+    }
+
+    /**
+     * A listener's interest in a refinement. Unsubscribing leaves the request running for others.
+     */
+    final class Subscription {
+        private final Entry entry;
+        private final Listener listener;
+
+        private Subscription(Entry entry, Listener listener) {
+            this.entry = entry;
+            this.listener = listener;
+        }
+
+        void unsubscribe() {
+            synchronized (RefineRequests.this) {
+                if (entry != null) entry.listeners.remove(listener);
+            }
+        }
+    }
+
+    private final class Entry {
+        final String key;
+        final HttpTransport.Cancellation cancellation = new HttpTransport.Cancellation();
+        final List<Listener> listeners = new ArrayList<>();
+        String partial = "";
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    // Streaming reads block for the whole answer, so each refinement gets its own thread
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Refine");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Entry> inFlight = new HashMap<>();
+    private int generation = 0;
+    private final Map<String, String> completed = new LinkedHashMap<String, String>(MAX_COMPLETED, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_COMPLETED;
+        }
+    };
+
+    private RefineRequests() {}
+
+    static synchronized RefineRequests getInstance() {
+        if (instance == null) {
+            instance = new RefineRequests();
+        }
+        return instance;
+    }
+
+    /** Current generation, to hand to prefetch() later. */
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Starts refining text in the background unless it is already running or done, or cancelAll()
+     * was called since getGeneration() returned `generation`.
+     */
+    synchronized void prefetch(String text, String targetLanguage, String apiKey, int generation) {
+        if (generation != this.generation) return;
+        String key = key(text, targetLanguage);
+        if (completed.containsKey(key) || inFlight.containsKey(key)) return;
+        start(key, text, targetLanguage, apiKey);
+    }
+
+    /**
+     * Refined text for listener: at once if it was refined before, else from the refinement
+     * already running (its text so far is replayed first), else from a new one.
+     */
+    synchronized Subscription subscribe(String text, String targetLanguage, String apiKey, Listener listener) {
+        String key = key(text, targetLanguage);
+        String refined = completed.get(key);
+        if (refined != null) {
+            listener.onDone(refined);
+            return new Subscription(null, listener);
+        }
+        Entry entry = inFlight.get(key);
+        if (entry == null) {
+            entry = start(key, text, targetLanguage, apiKey);
+        } else if (!entry.partial.isEmpty()) {
+            listener.onPartial(entry.partial);
+        }
+        entry.listeners.add(listener);
+        return new Subscription(entry, listener);
+    }
+
+    /** Aborts every refinement in flight (their listeners are not called again) and refuses older prefetches. */
+    synchronized void cancelAll() {
+        for (Entry entry : inFlight.values()) entry.cancellation.cancel();
+        inFlight.clear();
+        generation++;
+    }
+
+    // =========================================================
+    // Internals
+    // =========================================================
+
+    private Entry start(String key, final String text, final String targetLanguage, final String apiKey) {
+        final Entry entry = new Entry(key);
+        inFlight.put(key, entry);
+        workers.execute(() -> {
+            String refined = GeminiApi.refineStreaming(text, targetLanguage, apiKey,
+                    refinedSoFar -> onPartial(entry, refinedSoFar), entry.cancellation);
+            onDone(entry, refined);
+        });
+        return entry;
+    }
+
+    private synchronized void onPartial(Entry entry, String refinedSoFar) {
+        if (entry.cancellation.isCancelled()) return;
+        entry.partial = refinedSoFar;
+        for (Listener listener : entry.listeners) listener.onPartial(refinedSoFar);
+    }
+
+    // Failures are not kept, so the next tap tries again.
+    private synchronized void onDone(Entry entry, String refined) {
+        if (entry.cancellation.isCancelled()) return;
+        inFlight.remove(entry.key);
+        if (refined != null) completed.put(entry.key, refined);
+        for (Listener listener : entry.listeners) listener.onDone(refined);
+        entry.listeners.clear();
+    }
+
+    private static String key(String text, String targetLanguage) {
+        return targetLanguage + '\u0000' + text;
+    }
+}
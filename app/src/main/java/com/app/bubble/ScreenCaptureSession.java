@@ -0,0 +1,333 @@
+package com.app.bubble;
+
+import android.graphics.PixelFormat;
+import android.hardware.display.DisplayManager;
+import android.hardware.display.VirtualDisplay;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.projection.MediaProjection;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Long-lived screen capture session owned by FloatingTranslatorService.
+ * Keeps one ImageReader + VirtualDisplay pair open for the lifetime of the MediaProjection
+ * and hands out the latest frame on demand, instead of rebuilding the display for every tap.
+ * When nobody asks for frames for a while, the display surface is detached (paused) so the
+ * compositor stops rendering into it; the next request re-attaches it.
+ *
+ * All state is confined to the capture thread. Public methods only post work to it.
+ */
+public class ScreenCaptureSession {
+
+    private static final String TAG = "ScreenCaptureSession";
+
+    // Detach the surface after this long without a frame request.
+    private static final long IDLE_TIMEOUT_MS = 10000;
+    // How long a "fresh" request waits for a new frame before falling back to the latest one.
+    private static final long FRESH_FRAME_TIMEOUT_MS = 300;
+    // Give up if no frame at all arrives within this time.
+    private static final long FRAME_WAIT_TIMEOUT_MS = 2000;
+
+    public interface FrameCallback {
+        /**
+         * Called on the capture thread. The image belongs to the session:
+         * read what you need inside this call, never close or keep it.
+         */
+        void onFrame(Image image);
+
+        void onError(Exception e);
+    }
+
+    private final MediaProjection mediaProjection;
+    private final int width, height, density;
+
+    private HandlerThread captureThread;
+    private Handler captureHandler;
+    private ImageReader imageReader;
+    private VirtualDisplay virtualDisplay;
+
+    private Image latestImage;
+    private long frameSequence = 0;
+    private boolean paused = false;
+    private boolean closed = false;
+    private final List<PendingRequest> pendingRequests = new ArrayList<>();
+
+    // --- Stats ---
+    private long setupStartTime;
+    private long setupCostMs = -1;     // Cold cost: display creation -> first frame
+    private int framesServed = 0;
+    private long totalServeMs = 0;
+
+    private static class PendingRequest {
+        final FrameCallback callback;
+        final long requestTime;
+        final long minSequence;
+
+        PendingRequest(FrameCallback callback, long requestTime, long minSequence) {
+            this.callback = callback;
+            this.requestTime = requestTime;
+            this.minSequence = minSequence;
+        }
+    }
+
+    public ScreenCaptureSession(MediaProjection mediaProjection, int width, int height, int density) {
+        this.mediaProjection = mediaProjection;
+        this.width = width;
+        this.height = height;
+        this.density = density;
+    }
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    /**
+     * Creates the ImageReader and the VirtualDisplay. Must be called once, right after the
+     * projection is granted (Android 14+ only allows one VirtualDisplay per projection token).
+     */
+    public void open() {
+        captureThread = new HandlerThread("ScreenCapture");
+        captureThread.start();
+        captureHandler = new Handler(captureThread.getLooper());
+        captureHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                setupStartTime = SystemClock.elapsedRealtime();
+                // 3 buffers: one held as "latest", one being acquired, one being rendered.
+                imageReader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 3);
+                imageReader.setOnImageAvailableListener(imageListener, captureHandler);
+                try {
+                    virtualDisplay = mediaProjection.createVirtualDisplay("BubbleCapture",
+                            width, height, density,
+                            DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
+                            imageReader.getSurface(), null, captureHandler);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    failPending(e);
+                    release();
+                    return;
+                }
+                scheduleIdlePause();
+            }
+        });
+    }
+
+    /**
+     * Hands the latest frame to the callback.
+     * @param fresh If true, waits (briefly) for a frame rendered after this call, so overlays
+     *              removed just before the request are not in the picture.
+     */
+    public void requestFrame(final FrameCallback callback, final boolean fresh) {
+        if (captureHandler == null) {
+            callback.onError(new IllegalStateException("Capture session not open"));
+            return;
+        }
+        boolean posted = captureHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    callback.onError(new IllegalStateException("Capture session closed"));
+                    return;
+                }
+                long now = SystemClock.elapsedRealtime();
+                scheduleIdlePause();
+
+                if (paused) {
+                    resumeInternal();
+                }
+
+                if (!fresh && latestImage != null) {
+                    deliver(callback, now);
+                    return;
+                }
+
+                final PendingRequest request = new PendingRequest(callback, now, frameSequence + 1);
+                pendingRequests.add(request);
+                captureHandler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        expire(request);
+                    }
+                }, latestImage != null ? FRESH_FRAME_TIMEOUT_MS : FRAME_WAIT_TIMEOUT_MS);
+            }
+        });
+        if (!posted) {
+            // Looper already quit after close()
+            callback.onError(new IllegalStateException("Capture session closed"));
+        }
+    }
+
+    /**
+     * Pre-attaches the surface so that the next request does not pay the resume cost.
+     * Called when the user starts a selection.
+     */
+    public void warmUp() {
+        if (captureHandler == null) return;
+        captureHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) return;
+                if (paused) resumeInternal();
+                scheduleIdlePause();
+            }
+        });
+    }
+
+    /**
+     * Detaches the surface, e.g. while the bubble is hidden. The display itself is kept.
+     */
+    public void pause() {
+        if (captureHandler == null) return;
+        captureHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                pauseInternal();
+            }
+        });
+    }
+
+    public void close() {
+        if (captureHandler == null) return;
+        captureHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                failPending(new IllegalStateException("Capture session closed"));
+                release();
+            }
+        });
+    }
+
+    // --- Stats (read from any thread, values are best effort) ---
+
+    /** Time the cold path (create display -> first frame) took, or -1 if not measured yet. */
+    public long getSetupCostMs() { return setupCostMs; }
+
+    public int getFramesServed() { return framesServed; }
+
+    /** Average time saved per capture compared to building a new display for each tap. */
+    public long getAverageSavedMs() {
+        if (framesServed == 0 || setupCostMs < 0) return 0;
+        return Math.max(0, setupCostMs - (totalServeMs / framesServed));
+    }
+
+    // =========================================================
+    // Capture thread internals
+    // =========================================================
+
+    private final ImageReader.OnImageAvailableListener imageListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image;
+            try {
+                image = reader.acquireLatestImage();
+            } catch (IllegalStateException e) {
+                // Too many images acquired: drop the held one and try again.
+                if (latestImage != null) { latestImage.close(); latestImage = null; }
+                image = reader.acquireLatestImage();
+            }
+            if (image == null) return;
+
+            if (latestImage != null) latestImage.close();
+            latestImage = image;
+            frameSequence++;
+
+            if (setupCostMs < 0) {
+                setupCostMs = SystemClock.elapsedRealtime() - setupStartTime;
+                Log.d(TAG, "Cold setup cost: " + setupCostMs + "ms");
+            }
+
+            servePending();
+        }
+    };
+
+    private void servePending() {
+        if (latestImage == null || pendingRequests.isEmpty()) return;
+        List<PendingRequest> ready = new ArrayList<>();
+        for (PendingRequest request : pendingRequests) {
+            if (frameSequence >= request.minSequence) ready.add(request);
+        }
+        pendingRequests.removeAll(ready);
+        for (PendingRequest request : ready) {
+            deliver(request.callback, request.requestTime);
+        }
+    }
+
+    private void expire(PendingRequest request) {
+        if (!pendingRequests.contains(request)) return;
+        if (latestImage != null) {
+            // Screen did not change since the request: the latest frame is still accurate.
+            pendingRequests.remove(request);
+            deliver(request.callback, request.requestTime);
+        } else {
+            pendingRequests.remove(request);
+            request.callback.onError(new IllegalStateException("No frame received"));
+        }
+    }
+
+    private void deliver(FrameCallback callback, long requestTime) {
+        try {
+            callback.onFrame(latestImage);
+        } catch (Exception e) {
+            e.printStackTrace();
+            callback.onError(e);
+            return;
+        }
+        long serveMs = SystemClock.elapsedRealtime() - requestTime;
+        framesServed++;
+        totalServeMs += serveMs;
+        if (setupCostMs >= 0) {
+            Log.d(TAG, "Frame served in " + serveMs + "ms, saved ~" + Math.max(0, setupCostMs - serveMs)
+                    + "ms vs per-tap setup (avg saved " + getAverageSavedMs() + "ms over " + framesServed + ")");
+        }
+    }
+
+    private final Runnable idlePauseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (pendingRequests.isEmpty()) pauseInternal();
+        }
+    };
+
+    private void scheduleIdlePause() {
+        captureHandler.removeCallbacks(idlePauseRunnable);
+        captureHandler.postDelayed(idlePauseRunnable, IDLE_TIMEOUT_MS);
+    }
+
+    private void pauseInternal() {
+        if (paused || closed || virtualDisplay == null) return;
+        virtualDisplay.setSurface(null);
+        if (latestImage != null) { latestImage.close(); latestImage = null; }
+        paused = true;
+        Log.d(TAG, "Paused (idle)");
+    }
+
+    private void resumeInternal() {
+        if (!paused || closed || virtualDisplay == null) return;
+        virtualDisplay.setSurface(imageReader.getSurface());
+        paused = false;
+        Log.d(TAG, "Resumed");
+    }
+
+    private void failPending(Exception e) {
+        List<PendingRequest> failed = new ArrayList<>(pendingRequests);
+        pendingRequests.clear();
+        for (PendingRequest request : failed) {
+            request.callback.onError(e);
+        }
+    }
+
+    private void release() {
+        closed = true;
+        captureHandler.removeCallbacksAndMessages(null);
+        if (latestImage != null) { latestImage.close(); latestImage = null; }
+        if (virtualDisplay != null) { virtualDisplay.release(); virtualDisplay = null; }
+        if (imageReader != null) { imageReader.close(); imageReader = null; }
+        captureThread.quitSafely();
+    }
+}
@@ -0,0 +1,69 @@
+package com.app.bubble;
+
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Reads the visible text inside a screen region straight from the accessibility node tree.
+ *
+ * Most apps (TextView, RecyclerView, WebView, Compose) expose what they draw as node text, so
+ * this returns in a few milliseconds what OCR needs a screenshot and several hundred ms for.
+ * Apps that draw text themselves (games, canvases, images of text) have nothing here, and the
+ * caller falls back to MediaProjection + ML Kit.
+ */
+final class ScreenTextReader {
+
+    // Guards against pathological trees (huge WebViews); the OCR path is used instead.
+    private static final int MAX_NODES = 5000;
+
+    private final Rect region;
+    private final StringBuilder text = new StringBuilder();
+    private final Rect bounds = new Rect();
+    private int nodesVisited = 0;
+
+    private ScreenTextReader(Rect region) {
+        this.region = region;
+    }
+
+    /**
+     * Text of the visible nodes whose screen bounds intersect region, in layout (reading) order,
+     * one node per line. Returns null if the tree has no text there. The root is not recycled.
+     */
+    static String read(AccessibilityNodeInfo root, Rect region) {
+        if (root == null) return null;
+        ScreenTextReader reader = new ScreenTextReader(region);
+        if (!reader.visit(root)) return null;
+        String result = reader.text.toString().trim();
+        return result.isEmpty() ? null : result;
+    }
+
+    // Depth first, so sibling order matches the app's layout. Returns false if the tree is too big.
+    private boolean visit(AccessibilityNodeInfo node) {
+        if (++nodesVisited > MAX_NODES) return false;
+        if (!node.isVisibleToUser()) return true;
+
+        node.getBoundsInScreen(bounds);
+        // Children are laid out inside their parent, so a subtree outside the region is skipped whole.
+        if (!Rect.intersects(bounds, region)) return true;
+
+        CharSequence nodeText = node.getText();
+        if (nodeText != null && nodeText.length() > 0 && !node.isPassword()) {
+            // A node with text is a leaf for our purposes (WebView paragraphs repeat it in their children).
+            text.append(nodeText).append('\n');
+            return true;
+        }
+
+        for (int i = 0; i < node.getChildCount(); i++) {
+            AccessibilityNodeInfo child = node.getChild(i);
+            if (child == null) continue;
+            boolean ok;
+            try {
+                ok = visit(child);
+            } finally {
+                child.recycle();
+            }
+            if (!ok) return false;
+        }
+        return true;
+    }
+}
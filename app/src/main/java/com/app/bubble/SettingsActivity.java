@@ -10,6 +10,8 @@ import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import android.widget.Spinner;
 
+import com.app.bubble.core.StitchWorkers;
+
 // NEW: AdMob Imports
 import com.google.android.gms.ads.AdRequest;
 import com.google.android.gms.ads.AdView;
@@ -20,8 +22,23 @@ public class SettingsActivity extends Activity {
     public static final String PREFS_NAME = "BubbleTranslatorPrefs";
     public static final String KEY_TIMER_DURATION = "CropTimerDuration";
     public static final String KEY_API_KEY = "GeminiApiKey"; // New constant for the API key
+    public static final String KEY_BURST_INTERVAL = "BurstCaptureInterval";
+    public static final String KEY_STITCH_THREADS = "StitchThreads";
+    public static final String KEY_TEXT_SOURCE = "TextSource";
+
+    // Values of KEY_TEXT_SOURCE, in the order of R.array.text_source_options
+    public static final int TEXT_SOURCE_AUTO = 0; // Accessibility tree, OCR when it has no text
+    public static final int TEXT_SOURCE_OCR = 1;
+
+    // Burst capture intervals matching R.array.burst_interval_options
+    private static final long[] BURST_INTERVALS = {250L, 400L, 600L, 800L};
+    // Stitching threads matching R.array.stitch_thread_options (0 = one per core)
+    private static final int[] STITCH_THREADS = {0, 1, 2, 4};
 
     private Spinner cropTimerSpinner;
+    private Spinner burstIntervalSpinner;
+    private Spinner stitchThreadsSpinner;
+    private Spinner textSourceSpinner;
     private EditText apiKeyEditText; // New variable for the EditText field
     private SharedPreferences sharedPreferences;
 
@@ -32,6 +49,9 @@ public class SettingsActivity extends Activity {
 
         sharedPreferences = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         cropTimerSpinner = findViewById(R.id.crop_timer_spinner);
+        burstIntervalSpinner = findViewById(R.id.burst_interval_spinner);
+        stitchThreadsSpinner = findViewById(R.id.stitch_threads_spinner);
+        textSourceSpinner = findViewById(R.id.text_source_spinner);
         apiKeyEditText = findViewById(R.id.api_key_edit_text); // Find the new EditText
 
         // --- Setup for Crop Timer Spinner ---
@@ -43,6 +63,33 @@ public class SettingsActivity extends Activity {
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         cropTimerSpinner.setAdapter(adapter);
 
+        // --- Setup for Burst Capture Rate Spinner ---
+        ArrayAdapter<CharSequence> burstAdapter = ArrayAdapter.createFromResource(
+            this,
+            R.array.burst_interval_options,
+            android.R.layout.simple_spinner_item
+        );
+        burstAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        burstIntervalSpinner.setAdapter(burstAdapter);
+
+        // --- Setup for Stitching Threads Spinner ---
+        ArrayAdapter<CharSequence> threadsAdapter = ArrayAdapter.createFromResource(
+            this,
+            R.array.stitch_thread_options,
+            android.R.layout.simple_spinner_item
+        );
+        threadsAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        stitchThreadsSpinner.setAdapter(threadsAdapter);
+
+        // --- Setup for Text Source Spinner ---
+        ArrayAdapter<CharSequence> textSourceAdapter = ArrayAdapter.createFromResource(
+            this,
+            R.array.text_source_options,
+            android.R.layout.simple_spinner_item
+        );
+        textSourceAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        textSourceSpinner.setAdapter(textSourceAdapter);
+
         // Load the saved preferences and set the views to the correct state.
         loadCurrentSettings();
 
@@ -59,6 +106,49 @@ public class SettingsActivity extends Activity {
 				}
 			});
 
+        burstIntervalSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+				@Override
+				public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+					SharedPreferences.Editor editor = sharedPreferences.edit();
+					editor.putLong(KEY_BURST_INTERVAL, BURST_INTERVALS[position]);
+					editor.apply();
+				}
+
+				@Override
+				public void onNothingSelected(AdapterView<?> parent) {
+					// Do nothing.
+				}
+			});
+
+        stitchThreadsSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+				@Override
+				public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+					SharedPreferences.Editor editor = sharedPreferences.edit();
+					editor.putInt(KEY_STITCH_THREADS, STITCH_THREADS[position]);
+					editor.apply();
+					StitchWorkers.getInstance().setParallelism(STITCH_THREADS[position]);
+				}
+
+				@Override
+				public void onNothingSelected(AdapterView<?> parent) {
+					// Do nothing.
+				}
+			});
+
+        textSourceSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+				@Override
+				public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+					SharedPreferences.Editor editor = sharedPreferences.edit();
+					editor.putInt(KEY_TEXT_SOURCE, position);
+					editor.apply();
+				}
+
+				@Override
+				public void onNothingSelected(AdapterView<?> parent) {
+					// Do nothing.
+				}
+			});
+
         // NEW: Load the AdMob Banner Ad in the footer
         AdView mAdView = findViewById(R.id.adView);
         AdRequest adRequest = new AdRequest.Builder().build();
@@ -85,6 +175,25 @@ public class SettingsActivity extends Activity {
         }
         cropTimerSpinner.setSelection(position);
 
+        // Load the burst capture interval.
+        long savedInterval = sharedPreferences.getLong(KEY_BURST_INTERVAL, FloatingTranslatorService.CAPTURE_INTERVAL_MS);
+        int burstPosition = 1;
+        for (int i = 0; i < BURST_INTERVALS.length; i++) {
+            if (BURST_INTERVALS[i] == savedInterval) burstPosition = i;
+        }
+        burstIntervalSpinner.setSelection(burstPosition);
+
+        // Load the number of stitching threads.
+        int savedThreads = sharedPreferences.getInt(KEY_STITCH_THREADS, 0);
+        int threadsPosition = 0;
+        for (int i = 0; i < STITCH_THREADS.length; i++) {
+            if (STITCH_THREADS[i] == savedThreads) threadsPosition = i;
+        }
+        stitchThreadsSpinner.setSelection(threadsPosition);
+
+        // Load where captured text comes from.
+        textSourceSpinner.setSelection(sharedPreferences.getInt(KEY_TEXT_SOURCE, TEXT_SOURCE_AUTO));
+
         // Load the saved API key.
         String savedApiKey = sharedPreferences.getString(KEY_API_KEY, "");
         apiKeyEditText.setText(savedApiKey);
@@ -0,0 +1,193 @@
+package com.app.bubble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into the units it is translated and cached in.
+ *
+ * Paragraphs (separated by blank lines) are the segments; a paragraph longer than
+ * MAX_SEGMENT_CHARS is split further into sentences, and a sentence that is still too long is cut
+ * at the last space before the limit, so no segment exceeds it. Boundaries only depend on the text of the
+ * segment itself, so adding a page or a paragraph to a capture leaves the other segments, and
+ * their cache keys, unchanged. Joining every segment's text with its separator gives back the
+ * trimmed input.
+ *
+ * chunk() packs the same paragraphs into the bigger units Gemini refines, under a token budget.
+ * pack() and unpack() carry several segments in one translate request and back.
+ */
+final class TextSegmenter {
+
+    // Longer paragraphs are split into sentences (also keeps GET requests well below URL limits)
+    static final int MAX_SEGMENT_CHARS = 400;
+
+    private static final String PACK_SEPARATOR = "\n\n";
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n[ \\t\\u00A0]*\\n\\s*");
+    // Whitespace after sentence-ending punctuation (Latin, CJK, Devanagari danda)
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?\\u3002\\uFF01\\uFF1F\\u0964\\u0965])\\s+");
+    // A chunk also ends after a paragraph whose hash is divisible by this (about every 4 paragraphs),
+    // so chunk boundaries depend on the paragraphs around them and not on everything before them.
+    private static final int CHUNK_BOUNDARY_MODULUS = 4;
+
+    static final class Segment {
+        /** Text to translate; never empty or blank. */
+        final String text;
+        /** Whitespace that followed it in the input ("" for the last segment). */
+        final String separator;
+
+        Segment(String text, String separator) {
+            this.text = text;
+            this.separator = separator;
+        }
+    }
+
+    private TextSegmenter() {}
+
+    static List<Segment> split(String text) {
+        return split(text, MAX_SEGMENT_CHARS);
+    }
+
+    /**
+     * Consecutive segments packed into chunks of at most maxTokens (see estimateTokens), breaking
+     * at paragraphs where possible. An edit only changes the chunk it falls in (and at most the next
+     * one), so the others keep their cache keys. join() works on chunks as well.
+     */
+    static List<Segment> chunk(String text, int maxTokens) {
+        // A char is never less than a token (see estimateTokens), so maxTokens chars always fit
+        List<Segment> segments = split(text, maxTokens);
+        List<Segment> chunks = new ArrayList<>();
+        Segment current = null;
+        for (Segment segment : segments) {
+            if (current != null && estimateTokens(current.text) + estimateTokens(current.separator + segment.text) <= maxTokens) {
+                current = new Segment(current.text + current.separator + segment.text, segment.separator);
+            } else {
+                if (current != null) chunks.add(current);
+                current = segment;
+            }
+            if (isParagraphEnd(current) && (segment.text.hashCode() & 0x7fffffff) % CHUNK_BOUNDARY_MODULUS == 0) {
+                chunks.add(current);
+                current = null;
+            }
+        }
+        if (current != null) chunks.add(current);
+        return chunks;
+    }
+
+    /**
+     * Rough upper bound of the model tokens in text: about 4 ASCII chars per token, and one per
+     * char for everything else (Indic and CJK scripts tokenize far worse than English).
+     */
+    static int estimateTokens(String text) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 0x80) ascii++;
+            else other++;
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    private static boolean isParagraphEnd(Segment segment) {
+        return segment.separator.indexOf('\n') >= 0;
+    }
+
+    private static List<Segment> split(String text, int maxChars) {
+        List<Segment> segments = new ArrayList<>();
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) return segments;
+
+        Matcher paragraphs = PARAGRAPH_BREAK.matcher(trimmed);
+        int start = 0;
+        while (paragraphs.find()) {
+            addParagraph(segments, trimmed.substring(start, paragraphs.start()), paragraphs.group(), maxChars);
+            start = paragraphs.end();
+        }
+        addParagraph(segments, trimmed.substring(start), "", maxChars);
+        return segments;
+    }
+
+    private static void addParagraph(List<Segment> segments, String paragraph, String separator, int maxChars) {
+        if (paragraph.length() <= maxChars) {
+            segments.add(new Segment(paragraph, separator));
+            return;
+        }
+        Matcher sentences = SENTENCE_BREAK.matcher(paragraph);
+        int start = 0;
+        while (sentences.find()) {
+            addSentence(segments, paragraph.substring(start, sentences.start()), sentences.group(), maxChars);
+            start = sentences.end();
+        }
+        addSentence(segments, paragraph.substring(start), separator, maxChars);
+    }
+
+    // Run-on text (no punctuation, OCR of tables): cut at whitespace, or hard at the limit.
+    private static void addSentence(List<Segment> segments, String sentence, String separator, int maxChars) {
+        while (sentence.length() > maxChars) {
+            int cut = maxChars;
+            while (cut > maxChars / 2 && !Character.isWhitespace(sentence.charAt(cut))) cut--;
+            if (!Character.isWhitespace(sentence.charAt(cut))) {
+                cut = maxChars;
+                if (Character.isHighSurrogate(sentence.charAt(cut - 1))) cut--;
+                segments.add(new Segment(sentence.substring(0, cut), ""));
+                sentence = sentence.substring(cut);
+                continue;
+            }
+            int next = cut;
+            while (next < sentence.length() && Character.isWhitespace(sentence.charAt(next))) next++;
+            segments.add(new Segment(sentence.substring(0, cut), sentence.substring(cut, next)));
+            sentence = sentence.substring(next);
+        }
+        if (!sentence.isEmpty()) {
+            segments.add(new Segment(sentence, separator));
+        } else if (!segments.isEmpty()) {
+            // Keep the separator of the piece we consumed entirely
+            Segment last = segments.remove(segments.size() - 1);
+            segments.add(new Segment(last.text, last.separator + separator));
+        }
+    }
+
+    /** The translations of segments (same order) joined with the original separators. */
+    static String join(List<Segment> segments, List<String> translations) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            joined.append(translations.get(i)).append(segments.get(i).separator);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Segment texts as one request, each its own paragraph. A segment never contains a blank
+     * line, so unpack() can split the translation back at them.
+     */
+    static String pack(List<String> texts) {
+        StringBuilder packed = new StringBuilder();
+        for (int i = 0; i < texts.size(); i++) {
+            if (i > 0) packed.append(PACK_SEPARATOR);
+            packed.append(texts.get(i));
+        }
+        return packed.toString();
+    }
+
+    /** Length of a pack of packedLength (0: empty) once a text of textLength is added to it. */
+    static int packedLength(int packedLength, int textLength) {
+        return packedLength == 0 ? textLength : packedLength + PACK_SEPARATOR.length() + textLength;
+    }
+
+    /**
+     * The translation of a pack() of count texts split back into one per text, or null when it does
+     * not have exactly count non-blank paragraphs (the translator merged or split some).
+     */
+    static List<String> unpack(String translated, int count) {
+        String[] paragraphs = PARAGRAPH_BREAK.split(translated.trim(), -1);
+        if (paragraphs.length != count) return null;
+        List<String> parts = new ArrayList<>(count);
+        for (String paragraph : paragraphs) {
+            String part = paragraph.trim();
+            if (part.isEmpty()) return null;
+            parts.add(part);
+        }
+        return parts;
+    }
+}
@@ -1,59 +1,277 @@
 package com.app.bubble;
 
-import org.json.JSONArray;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import java.io.IOException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class TranslateApi {
 
+    static final String DEFAULT_ENDPOINT = "https://translate.googleapis.com/translate_a/single";
+
+    // Segments of one text fetched at the same time (the endpoint throttles bursts)
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+    // Tries per segment before it is given up on
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 300;
+
+    private static final ExecutorService requestPool = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS,
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "TranslateRequest-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Receives partial results while a long text is being translated.
+     */
+    public interface ProgressListener {
+        /**
+         * Called on a worker thread, in completion order: once after the cache lookup and again each
+         * time a segment finishes. partial is the whole text with the finished segments translated and
+         * the others still in the source language; done of total segments are finished.
+         */
+        void onProgress(String partial, int done, int total);
+    }
+
     // This class is not meant to be instantiated, so we make the constructor private.
     private TranslateApi() {}
 
     /**
      * Translates text from a source language to a target language.
+     * The text is translated paragraph by paragraph (see TextSegmenter), and each segment is answered
+     * from TranslationCache when it was translated before for this language pair, so only new
+     * segments go over the network. Consecutive new segments share a request of up to
+     * MAX_SEGMENT_CHARS (and are still cached one by one); requests run at most MAX_PARALLEL_REQUESTS
+     * at a time, each retried up to MAX_ATTEMPTS times. A segment that still fails stays
+     * untranslated in the result.
+     * Blocks until every segment is done; call it off the main thread. Interrupting the caller
+     * abandons the requests and returns null right away.
      * @param fromLang The source language code (e.g., "en" for English).
      * @param toLang The target language code (e.g., "ml" for Malayalam).
      * @param text The text to be translated.
-     * @return The translated text as a String, or null if an error occurs.
+     * @return The translated text as a String, or null if an error occurs (no segment could be translated).
      */
     public static String translate(String fromLang, String toLang, String text) {
+        return translate(ApiConfig.DEFAULT, fromLang, toLang, text, null);
+    }
+
+    /**
+     * Same as translate(fromLang, toLang, text), reporting each finished segment to listener (may be null).
+     */
+    public static String translate(String fromLang, String toLang, String text, ProgressListener listener) {
+        return translate(ApiConfig.DEFAULT, fromLang, toLang, text, listener);
+    }
+
+    /**
+     * Same as translate(fromLang, toLang, text, listener), against config's endpoint and cache setting.
+     */
+    static String translate(final ApiConfig config, final String fromLang, final String toLang, String text,
+                            ProgressListener listener) {
+        List<TextSegmenter.Segment> segments = TextSegmenter.split(text);
+        if (segments.size() <= 1) return translateSegment(config, fromLang, toLang, text);
+
+        // 1. Cached segments right away; runs of the others packed into requests of up to MAX_SEGMENT_CHARS
+        final Progress progress = new Progress(segments, listener);
+        List<Future<Integer>> requests = new ArrayList<>();
+        List<Integer> pack = new ArrayList<>();
+        int packedLength = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            String segmentText = segments.get(i).text;
+            String cached = cached(config, fromLang, toLang, segmentText);
+            if (cached != null) {
+                progress.set(i, cached);
+                packedLength = submitPack(requests, config, fromLang, toLang, pack, progress);
+                continue;
+            }
+            if (TextSegmenter.packedLength(packedLength, segmentText.length()) > TextSegmenter.MAX_SEGMENT_CHARS) {
+                packedLength = submitPack(requests, config, fromLang, toLang, pack, progress);
+            }
+            pack.add(i);
+            packedLength = TextSegmenter.packedLength(packedLength, segmentText.length());
+        }
+        submitPack(requests, config, fromLang, toLang, pack, progress);
+        progress.report();
+
+        // 2. Wait for the rest; failed segments keep their source text
+        int failed = 0;
         try {
-            // Construct the URL for the Google Translate API.
-            String urlStr = "https://translate.googleapis.com/translate_a/single?client=gtx&sl=" +
-				fromLang + "&tl=" + toLang + "&dt=t&q=" + URLEncoder.encode(text, "UTF-8");
+            for (Future<Integer> request : requests) failed += request.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            for (Future<Integer> request : requests) request.cancel(true);
+            return null;
+        }
+        if (failed == segments.size()) return null;
+        if (failed > 0) Log.w("TranslateApi", failed + " of " + segments.size() + " segments left untranslated");
+        return progress.join();
+    }
+
+    // Sends the segments at indices (if any) as one request on the pool and empties the list.
+    // The request's result is the number of segments it could not translate. Returns 0, the length of the empty pack.
+    private static int submitPack(List<Future<Integer>> requests, final ApiConfig config, final String fromLang,
+                                  final String toLang, List<Integer> indices, final Progress progress) {
+        if (indices.isEmpty()) return 0;
+        final List<Integer> pack = new ArrayList<>(indices);
+        indices.clear();
+        requests.add(requestPool.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                List<String> translated = fetchPack(config, fromLang, toLang, progress.texts(pack));
+                progress.complete(pack, translated);
+                int failed = 0;
+                for (String part : translated) if (part == null) failed++;
+                return failed;
+            }
+        }));
+        return 0;
+    }
+
+    // Segments of one translate() call, filled in as requests finish (any thread).
+    private static final class Progress {
+        private final List<TextSegmenter.Segment> segments;
+        private final List<String> parts;
+        private final ProgressListener listener;
+        private int done = 0;
+
+        Progress(List<TextSegmenter.Segment> segments, ProgressListener listener) {
+            this.segments = segments;
+            this.listener = listener;
+            parts = new ArrayList<>(segments.size());
+            for (TextSegmenter.Segment segment : segments) parts.add(segment.text);
+        }
+
+        synchronized void set(int index, String translated) {
+            parts.set(index, translated);
+            done++;
+        }
+
+        List<String> texts(List<Integer> indices) {
+            List<String> texts = new ArrayList<>(indices.size());
+            for (int index : indices) texts.add(segments.get(index).text);
+            return texts;
+        }
 
-            URL url = new URL(urlStr);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            // Set a user-agent to avoid being blocked.
-            connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-
-            // Read the response from the server.
-            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+        // An entry of translated is null when that segment failed; it keeps its source text.
+        synchronized void complete(List<Integer> indices, List<String> translated) {
+            for (int i = 0; i < indices.size(); i++) {
+                if (translated.get(i) != null) parts.set(indices.get(i), translated.get(i));
             }
-            reader.close();
-            connection.disconnect();
-
-            // The API returns a complex JSON array. We need to parse it to extract the full translation.
-            // [[["Translated sentence 1","Original sentence 1"],["Translated sentence 2","Original sentence 2"]],...]
-            // The previous bug was only reading the first element. This new code iterates through all parts.
-            JSONArray jsonArray = new JSONArray(response.toString());
-            JSONArray translations = jsonArray.getJSONArray(0);
-            StringBuilder translatedText = new StringBuilder();
-
-            for (int i = 0; i < translations.length(); i++) {
-                JSONArray translationSegment = translations.getJSONArray(i);
-                // Append each translated segment to our result.
-                translatedText.append(translationSegment.getString(0));
+            done += indices.size();
+            report();
+        }
+
+        // Under the lock, so listeners see the reports in order (they are expected to just post them).
+        synchronized void report() {
+            if (listener != null) listener.onProgress(join(), done, segments.size());
+        }
+
+        synchronized String join() {
+            return TextSegmenter.join(segments, parts);
+        }
+    }
+
+    // One segment: cache, then network. The request runs on the pool too, so an interrupt of the
+    // caller (a cancelled pipeline job) returns at once instead of waiting out a blocked socket read.
+    private static String translateSegment(final ApiConfig config, final String fromLang, final String toLang,
+                                           final String text) {
+        String cached = cached(config, fromLang, toLang, text);
+        if (cached != null) return cached;
+        Future<String> request = requestPool.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return fetchAndCache(config, fromLang, toLang, text);
+            }
+        });
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            request.cancel(true); // Stops the retries; a read in progress ends at its timeout
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static String cached(ApiConfig config, String fromLang, String toLang, String text) {
+        return config.cachesEnabled ? TranslationCache.getInstance().get(fromLang, toLang, text) : null;
+    }
+
+    // Several segments in one request, each cached under its own text (null entries failed). When the
+    // answer does not split back into one paragraph per segment, each is requested on its own instead.
+    private static List<String> fetchPack(ApiConfig config, String fromLang, String toLang, List<String> texts) {
+        List<String> translated = new ArrayList<>(texts.size());
+        if (texts.size() == 1) {
+            translated.add(fetchAndCache(config, fromLang, toLang, texts.get(0)));
+            return translated;
+        }
+        long start = System.nanoTime();
+        String packed = fetchWithRetries(config, fromLang, toLang, TextSegmenter.pack(texts));
+        List<String> parts = packed != null ? TextSegmenter.unpack(packed, texts.size()) : null;
+        if (parts != null) {
+            long nanosEach = (System.nanoTime() - start) / texts.size();
+            for (int i = 0; i < texts.size(); i++) cache(config, fromLang, toLang, texts.get(i), parts.get(i), nanosEach);
+            return parts;
+        }
+        for (String text : texts) {
+            // Not worth retrying one by one after the whole pack failed, or once cancelled
+            boolean fallBack = packed != null && !Thread.currentThread().isInterrupted();
+            translated.add(fallBack ? fetchAndCache(config, fromLang, toLang, text) : null);
+        }
+        return translated;
+    }
+
+    // Only successes are cached, so the next call for a failed segment goes to the network again.
+    private static String fetchAndCache(ApiConfig config, String fromLang, String toLang, String text) {
+        long start = System.nanoTime();
+        String translated = fetchWithRetries(config, fromLang, toLang, text);
+        if (translated != null) cache(config, fromLang, toLang, text, translated, System.nanoTime() - start);
+        return translated;
+    }
+
+    private static void cache(ApiConfig config, String fromLang, String toLang, String text, String translated,
+                              long networkNanos) {
+        if (config.cachesEnabled) TranslationCache.getInstance().put(fromLang, toLang, text, translated, networkNanos);
+    }
+
+    // Network with retries, no cache.
+    private static String fetchWithRetries(ApiConfig config, String fromLang, String toLang, String text) {
+        for (int attempt = 1; ; attempt++) {
+            String translated = fetch(config, fromLang, toLang, text);
+            if (translated != null) return translated;
+            if (attempt >= MAX_ATTEMPTS) return null;
+            try {
+                Thread.sleep(RETRY_BACKOFF_MS * attempt);
+            } catch (InterruptedException e) {
+                return null; // Cancelled
             }
+        }
+    }
 
-            return translatedText.toString();
+    // One network round trip, no cache.
+    private static String fetch(ApiConfig config, String fromLang, String toLang, String text) {
+        try {
+            // Construct the URL for the Google Translate API.
+            String urlStr = config.translateEndpoint + "?client=gtx&sl=" +
+				fromLang + "&tl=" + toLang + "&dt=t&q=" + URLEncoder.encode(text, "UTF-8");
+            return HttpTransport.get(urlStr, TranslateApi::readTranslation);
 
         } catch (Exception e) {
             // Log the error for debugging purposes.
@@ -63,5 +281,37 @@ public final class TranslateApi {
 
         }
     }
-}
 
+    // The API returns a complex JSON array; the translation is the first string of every part of the first element.
+    // [[["Translated sentence 1","Original sentence 1",...],["Translated sentence 2","Original sentence 2",...]],null,"en",...]
+    // Everything after the first element is skipped without being built.
+    private static String readTranslation(JsonReader reader) throws IOException {
+        StringBuilder translatedText = new StringBuilder();
+        reader.beginArray();
+        if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.STRING) {
+                        // Append each translated segment to our result.
+                        translatedText.append(reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                while (reader.hasNext()) reader.skipValue();
+                reader.endArray();
+            }
+            reader.endArray();
+        }
+        while (reader.hasNext()) reader.skipValue();
+        reader.endArray();
+        return translatedText.toString();
+    }
+
+    /** Opens a pooled connection to the translate endpoint ahead of the first request. */
+    public static void prewarm() {
+        HttpTransport.prewarm(DEFAULT_ENDPOINT);
+    }
+}
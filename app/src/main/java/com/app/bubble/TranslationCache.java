@@ -0,0 +1,276 @@
+package com.app.bubble;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Two-tier cache of finished translations, in front of the network in TranslateApi.
+ *
+ * Key: source code, target code and the SHA-256 of the normalized text (line endings unified,
+ * runs of spaces collapsed, lines trimmed), so re-translating the same crop or switching back to
+ * a previous language pair costs no round trip.
+ * - Memory: an LruCache sized in characters.
+ * - Disk: one file per entry in the directory given to setDiskDir() (survives service and process
+ *   restarts), capped at DISK_MAX_BYTES; the least recently used files are deleted first.
+ *
+ * Thread safe. Disk access happens on the caller's thread, so call it off the main thread.
+ */
+public class TranslationCache {
+
+    private static final String TAG = "TranslationCache";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // ~512KB of translated text on the heap
+    private static final int MEMORY_MAX_CHARS = 256 * 1024;
+    private static final long DISK_MAX_BYTES = 4L * 1024 * 1024;
+    private static final String FILE_SUFFIX = ".txt";
+
+    private static TranslationCache instance;
+
+    private final LruCache<String, String> memory = new LruCache<String, String>(MEMORY_MAX_CHARS) {
+        @Override
+        protected int sizeOf(String key, String value) {
+            return value.length();
+        }
+    };
+
+    private File diskDir;
+    private long diskBytes = -1; // Unknown until the directory is first scanned
+
+    // --- Stats (since process start) ---
+    private long memoryHits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long hitNanos = 0;     // Time spent serving hits
+    private long networkNanos = 0; // Time spent on the network for misses that were then stored
+    private long networkCalls = 0;
+
+    private TranslationCache() {}
+
+    public static synchronized TranslationCache getInstance() {
+        if (instance == null) {
+            instance = new TranslationCache();
+        }
+        return instance;
+    }
+
+    /** Enables the disk tier. Without it only the memory tier is used. */
+    public synchronized void setDiskDir(File dir) {
+        diskDir = dir;
+        diskBytes = -1;
+    }
+
+    /**
+     * The cached translation of text, or null on a miss.
+     */
+    public String get(String fromLang, String toLang, String text) {
+        long start = System.nanoTime();
+        String key = key(fromLang, toLang, text);
+        String cached = memory.get(key);
+        if (cached != null) {
+            synchronized (this) {
+                memoryHits++;
+                hitNanos += System.nanoTime() - start;
+            }
+            return cached;
+        }
+        synchronized (this) {
+            cached = readDisk(key);
+            if (cached == null) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+            hitNanos += System.nanoTime() - start;
+        }
+        memory.put(key, cached);
+        return cached;
+    }
+
+    /**
+     * Stores a translation that took networkNanos to fetch (used for the saved-latency estimate).
+     */
+    public void put(String fromLang, String toLang, String text, String translation, long networkNanos) {
+        String key = key(fromLang, toLang, text);
+        memory.put(key, translation);
+        synchronized (this) {
+            this.networkNanos += networkNanos;
+            networkCalls++;
+            writeDisk(key, translation);
+        }
+    }
+
+    /** Drops both tiers (the stats are kept). */
+    public synchronized void clear() {
+        memory.evictAll();
+        File[] files = diskDir == null ? null : diskDir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        diskBytes = 0;
+    }
+
+    // =========================================================
+    // Keys
+    // =========================================================
+
+    // Same text up to whitespace noise -> same key.
+    static String normalize(String text) {
+        String[] lines = text.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1);
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (String line : lines) {
+            if (normalized.length() > 0) normalized.append('\n');
+            normalized.append(line.trim().replaceAll("[ \\t\\u00A0]+", " "));
+        }
+        return normalized.toString().trim();
+    }
+
+    private static String key(String fromLang, String toLang, String text) {
+        return fromLang + "-" + toLang + "-" + sha256(normalize(text));
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Always present on Android
+        }
+    }
+
+    // =========================================================
+    // Disk tier (callers hold the lock)
+    // =========================================================
+
+    private String readDisk(String key) {
+        if (diskDir == null) return null;
+        File file = new File(diskDir, key + FILE_SUFFIX);
+        if (!file.isFile()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            file.setLastModified(System.currentTimeMillis()); // Recently used: evicted last
+            return new String(bytes, 0, read, UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, String translation) {
+        if (diskDir == null) return;
+        if (!diskDir.isDirectory() && !diskDir.mkdirs()) return;
+        if (diskBytes < 0) diskBytes = scanDiskBytes();
+
+        File file = new File(diskDir, key + FILE_SUFFIX);
+        File tmp = new File(diskDir, key + ".tmp");
+        byte[] bytes = translation.getBytes(UTF_8);
+        long previous = file.length();
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+        // Rename so a kill mid-write never leaves a truncated entry behind
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        diskBytes += bytes.length - previous;
+        if (diskBytes > DISK_MAX_BYTES) trimDisk();
+    }
+
+    private long scanDiskBytes() {
+        long total = 0;
+        File[] files = diskDir.listFiles();
+        if (files != null) {
+            for (File file : files) total += file.length();
+        }
+        return total;
+    }
+
+    // Least recently used first, down to three quarters of the cap so trimming is not repeated on every put.
+    private void trimDisk() {
+        File[] files = diskDir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        int deleted = 0;
+        for (File file : files) {
+            if (diskBytes <= DISK_MAX_BYTES * 3 / 4) break;
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+                deleted++;
+            }
+        }
+        Log.d(TAG, "Trimmed " + deleted + " entries, " + diskBytes + " bytes left on disk");
+    }
+
+    // =========================================================
+    // Stats
+    // =========================================================
+
+    public synchronized long getMemoryHits() { return memoryHits; }
+
+    public synchronized long getDiskHits() { return diskHits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    /** Share of lookups served from either tier, 0..1. */
+    public synchronized double getHitRate() {
+        long lookups = memoryHits + diskHits + misses;
+        return lookups == 0 ? 0 : (memoryHits + diskHits) / (double) lookups;
+    }
+
+    /** Average time of a cache hit, in milliseconds. */
+    public synchronized double getAverageHitMs() {
+        long hits = memoryHits + diskHits;
+        return hits == 0 ? 0 : hitNanos / 1e6 / hits;
+    }
+
+    /** Average network round trip of a miss, in milliseconds. */
+    public synchronized double getAverageNetworkMs() {
+        return networkCalls == 0 ? 0 : networkNanos / 1e6 / networkCalls;
+    }
+
+    /** Estimated time saved: every hit would otherwise have cost an average round trip. */
+    public synchronized double getSavedMs() {
+        return (memoryHits + diskHits) * Math.max(0, getAverageNetworkMs() - getAverageHitMs());
+    }
+
+    public int getMemoryEntries() { return memory.snapshot().size(); }
+
+    public synchronized long getDiskBytes() {
+        if (diskDir == null) return 0;
+        if (diskBytes < 0) diskBytes = scanDiskBytes();
+        return diskBytes;
+    }
+}
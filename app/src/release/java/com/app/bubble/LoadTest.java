@@ -0,0 +1,16 @@
+package com.app.bubble;
+
+/**
+ * Release builds ship no stub server: DiagnosticsActivity hides the load test (see the debug
+ * version of this class).
+ */
+final class LoadTest {
+
+    static final boolean AVAILABLE = false;
+
+    private LoadTest() {}
+
+    static String run(int operations, int concurrency, long latencyMs, long jitterMs, double errorRate) {
+        throw new UnsupportedOperationException("The load test is only in debug builds");
+    }
+}
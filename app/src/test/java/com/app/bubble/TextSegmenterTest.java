@@ -0,0 +1,127 @@
+package com.app.bubble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * TextSegmenter on random OCR-like text (short and run-on paragraphs, mixed ASCII and
+ * Malayalam, CJK without spaces): no segment or chunk is blank or over its limit or cut inside
+ * a surrogate pair, joining them gives back the trimmed input, packed segments split back apart,
+ * and an edit leaves the other paragraphs' segments alone.
+ */
+public class TextSegmenterTest {
+
+    private static final int INPUTS = 2000;
+
+    @Test
+    public void splitRoundTrips() {
+        Random random = new Random(1);
+        for (int n = 0; n < INPUTS; n++) {
+            String text = randomText(random);
+            List<TextSegmenter.Segment> segments = TextSegmenter.split(text);
+            for (TextSegmenter.Segment segment : segments) {
+                assertFalse("Blank segment in input " + n, segment.text.trim().isEmpty());
+                assertTrue("Segment over the limit in input " + n,
+                        segment.text.length() <= TextSegmenter.MAX_SEGMENT_CHARS);
+            }
+            assertEquals("Input " + n, text.trim(), TextSegmenter.join(segments, texts(segments)));
+        }
+    }
+
+    @Test
+    public void chunkRoundTripsWithinBudget() {
+        Random random = new Random(2);
+        for (int n = 0; n < INPUTS; n++) {
+            String text = randomText(random);
+            int maxTokens = 200 + random.nextInt(1000);
+            List<TextSegmenter.Segment> chunks = TextSegmenter.chunk(text, maxTokens);
+            for (TextSegmenter.Segment chunk : chunks) {
+                assertFalse("Blank chunk in input " + n, chunk.text.trim().isEmpty());
+                assertTrue("Chunk over " + maxTokens + " tokens in input " + n,
+                        TextSegmenter.estimateTokens(chunk.text) <= maxTokens);
+            }
+            assertEquals("Input " + n, text.trim(), TextSegmenter.join(chunks, texts(chunks)));
+        }
+    }
+
+    @Test
+    public void editKeepsOtherSegments() {
+        String first = "The first paragraph stays the same.";
+        String last = "So does the last one.";
+        List<TextSegmenter.Segment> before = TextSegmenter.split(first + "\n\nMiddle.\n\n" + last);
+        List<TextSegmenter.Segment> after = TextSegmenter.split(first + "\n\nAn edited middle.\n\n" + last);
+        assertEquals(before.get(0).text, after.get(0).text);
+        assertEquals(before.get(2).text, after.get(2).text);
+    }
+
+    @Test
+    public void packRoundTrips() {
+        Random random = new Random(3);
+        for (int n = 0; n < INPUTS; n++) {
+            List<String> texts = texts(TextSegmenter.split(randomText(random)));
+            String packed = TextSegmenter.pack(texts);
+            int length = 0;
+            for (String text : texts) length = TextSegmenter.packedLength(length, text.length());
+            assertEquals("Input " + n, packed.length(), length);
+            // A translator that keeps the paragraphs but not their exact whitespace
+            List<String> trimmed = new ArrayList<>();
+            for (String text : texts) trimmed.add(text.trim());
+            assertEquals("Input " + n, trimmed, TextSegmenter.unpack(" " + packed.replace("\n\n", "\n \n") + "\n", texts.size()));
+        }
+    }
+
+    @Test
+    public void unpackRejectsMergedParagraphs() {
+        assertNull(TextSegmenter.unpack("One.\n\nTwo and three.", 3));
+        assertNull(TextSegmenter.unpack("One.\n\n \n\nThree.", 3));
+    }
+
+    @Test
+    public void blankTextHasNoSegments() {
+        assertTrue(TextSegmenter.split(" \n\n\t ").isEmpty());
+    }
+
+    // =========================================================
+    // Helpers
+    // =========================================================
+
+    // 1 to 30 paragraphs, one in five of them a run-on of up to 800 words (OCR of a table or log).
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int paragraphs = 1 + random.nextInt(30);
+        for (int p = 0; p < paragraphs; p++) {
+            if (p > 0) text.append(random.nextInt(4) == 0 ? "\n \n  " : "\n\n");
+            int words = 1 + random.nextInt(random.nextInt(5) == 0 ? 800 : 80);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) text.append(random.nextInt(12) == 0 ? ". " : random.nextInt(20) == 0 ? "\n" : " ");
+                int kind = random.nextInt(20);
+                if (kind == 0) {
+                    text.append("മലയാളം");
+                } else if (kind == 1) {
+                    // No spaces at all: forces a hard cut, never inside a surrogate pair
+                    for (int c = random.nextInt(300); c > 0; c--) text.append(random.nextBoolean() ? "漢" : "𠀋");
+                } else {
+                    text.append("word").append(random.nextInt(100));
+                }
+            }
+        }
+        return random.nextBoolean() ? "  " + text + "\n" : text.toString();
+    }
+
+    private static List<String> texts(List<TextSegmenter.Segment> segments) {
+        List<String> texts = new ArrayList<>();
+        for (TextSegmenter.Segment segment : segments) {
+            assertFalse("Split surrogate pair", Character.isHighSurrogate(segment.text.charAt(segment.text.length() - 1)));
+            texts.add(segment.text);
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,85 @@
+package com.app.bubble.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Merge throughput: frames per second appended to a StreamingStitcher, overlap detection
+ * and tile copies included, for a whole scroll capture of FRAMES frames.
+ * `store` = memory keeps every tile on the heap, disk spills all but HOT_TILES to a temp file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MergeBenchmark {
+
+    private static final int FRAMES = 24;
+    private static final int HOT_TILES = 6;
+
+    @Param({"1080x2400", "1440x3200"})
+    public String resolution;
+
+    @Param({"memory", "disk"})
+    public String store;
+
+    private PixelSource[] frames;
+    private File spillFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StitchWorkers.getInstance().setParallelism(1);
+        int[] size = SyntheticPages.parseResolution(resolution);
+        int width = size[0];
+        int height = size[1];
+        int header = SyntheticPages.headerRows(height);
+        int footer = SyntheticPages.footerRows(height);
+        int band = height - header - footer;
+
+        // Scroll steps between 20% and 80% of the band, as an auto-scroll produces
+        Random random = new Random(7);
+        int[] offsets = new int[FRAMES];
+        for (int i = 1; i < FRAMES; i++) {
+            offsets[i] = offsets[i - 1] + band / 5 + random.nextInt(band * 3 / 5);
+        }
+        int[] page = SyntheticPages.page(width, offsets[FRAMES - 1] + band, 42);
+        frames = new PixelSource[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            frames[i] = new IntArrayPixelSource(
+                    SyntheticPages.frame(page, width, height, offsets[i], header, footer), width, height);
+        }
+        spillFile = File.createTempFile("merge-benchmark", ".tiles");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (!spillFile.delete()) spillFile.deleteOnExit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int stitch() {
+        StreamingStitcher stitcher = "disk".equals(store)
+                ? new StreamingStitcher(spillFile, HOT_TILES)
+                : new StreamingStitcher();
+        for (PixelSource frame : frames) {
+            stitcher.append(frame);
+        }
+        int height = stitcher.getHeight();
+        stitcher.release();
+        return height;
+    }
+}
@@ -0,0 +1,81 @@
+package com.app.bubble.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Overlap detection between two consecutive frames, per frame pair.
+ *
+ * - coarseLevel: the per-frame signature pass (the part that touches pixels).
+ * - find: the coarse-to-fine search given both levels.
+ * - detectOverlap: what StreamingStitcher pays per appended frame (level of the new frame + find).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OverlapBenchmark {
+
+    @Param({"1080x2400", "1440x3200"})
+    public String resolution;
+
+    /** How far the page moved between the frames, as a share of the scrolling band. */
+    @Param({"0.25", "0.75"})
+    public double scrollFraction;
+
+    /** StitchWorkers parallelism, 0 = one thread per core. */
+    @Param({"1", "0"})
+    public int threads;
+
+    private PixelSource top;
+    private PixelSource bottom;
+    private long[] topLevel;
+    private long[] bottomLevel;
+    private int expectedScroll;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StitchWorkers.getInstance().setParallelism(threads);
+        int[] size = SyntheticPages.parseResolution(resolution);
+        int width = size[0];
+        int height = size[1];
+        int header = SyntheticPages.headerRows(height);
+        int footer = SyntheticPages.footerRows(height);
+        int band = height - header - footer;
+        expectedScroll = (int) (band * scrollFraction);
+
+        int[] page = SyntheticPages.page(width, band + expectedScroll, 42);
+        top = new IntArrayPixelSource(SyntheticPages.frame(page, width, height, 0, header, footer), width, height);
+        bottom = new IntArrayPixelSource(SyntheticPages.frame(page, width, height, expectedScroll, header, footer), width, height);
+        topLevel = OverlapFinder.coarseLevel(top);
+        bottomLevel = OverlapFinder.coarseLevel(bottom);
+
+        OverlapFinder.Result result = OverlapFinder.find(top, topLevel, bottom, bottomLevel);
+        if (result.scroll != expectedScroll || !result.isMatch()) {
+            throw new IllegalStateException("Expected scroll " + expectedScroll + ", got " + result);
+        }
+    }
+
+    @Benchmark
+    public long[] coarseLevel() {
+        return OverlapFinder.coarseLevel(bottom);
+    }
+
+    @Benchmark
+    public OverlapFinder.Result find() {
+        return OverlapFinder.find(top, topLevel, bottom, bottomLevel);
+    }
+
+    @Benchmark
+    public OverlapFinder.Result detectOverlap() {
+        return OverlapFinder.find(top, topLevel, bottom, OverlapFinder.coarseLevel(bottom));
+    }
+}
@@ -0,0 +1,46 @@
+package com.app.bubble.core;
+
+/**
+ * A PixelSource over ARGB pixels in an int[] (row i starts at offset + i * stride).
+ * Used for frames that already live on the heap and by the desktop benchmarks.
+ */
+public class IntArrayPixelSource implements PixelSource {
+
+    private final int[] pixels;
+    private final int offset;
+    private final int stride;
+    private final int width;
+    private final int height;
+
+    public IntArrayPixelSource(int[] pixels, int width, int height) {
+        this(pixels, 0, width, width, height);
+    }
+
+    public IntArrayPixelSource(int[] pixels, int offset, int stride, int width, int height) {
+        if (offset + (long) stride * (height - 1) + width > pixels.length) {
+            throw new IllegalArgumentException("Pixel array too small for " + width + "x" + height);
+        }
+        this.pixels = pixels;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void readRows(int y, int rows, int readWidth, int[] dst, int dstOffset, int dstStride) {
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(pixels, offset + (y + i) * stride, dst, dstOffset + i * dstStride, readWidth);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.app.bubble.core;
+
+import java.nio.IntBuffer;
+
+/**
+ * A PixelSource over ARGB pixels in an IntBuffer, e.g. a direct buffer filled from an
+ * ImageReader plane or a mapped file (row i starts at index i * stride).
+ * The buffer's position and limit are not changed.
+ */
+public class IntBufferPixelSource implements PixelSource {
+
+    private final IntBuffer pixels;
+    private final int stride;
+    private final int width;
+    private final int height;
+
+    public IntBufferPixelSource(IntBuffer pixels, int stride, int width, int height) {
+        if ((long) stride * (height - 1) + width > pixels.capacity()) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        this.pixels = pixels;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void readRows(int y, int rows, int readWidth, int[] dst, int dstOffset, int dstStride) {
+        // A duplicate has its own position, so concurrent readers (fork-join tasks) do not interfere
+        IntBuffer view = pixels.duplicate();
+        for (int i = 0; i < rows; i++) {
+            view.position((y + i) * stride);
+            view.get(dst, dstOffset + i * dstStride, readWidth);
+        }
+    }
+}
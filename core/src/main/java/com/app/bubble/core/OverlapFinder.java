@@ -0,0 +1,594 @@
+package com.app.bubble.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the vertical scroll offset between two consecutive screen captures.
+ * Works on row signatures (one hash per pixel row) and matches a block of rows with a
+ * Rabin-Karp rolling hash in linear time.
+ *
+ * Plain Java on purpose (no android.* imports): it only sees PixelSources, int[] pixels and long[] hashes.
+ *
+ * Model: the page moved up by `scroll` rows between the frames, i.e. bottom row j shows
+ * what top row j + scroll showed. Rows that are identical at the same position at the very
+ * top / bottom of both frames are treated as a static header / footer (toolbars, nav bars)
+ * and excluded from matching.
+ *
+ * Coarse to fine: reading every pixel of a frame is what costs time, not the search.
+ * coarseLevel() keeps one luma signature per LEVEL_STEP rows, each sampling every COARSE_STEP-th
+ * pixel (an 8x downsampled luma image, ~1/8 of the frame's memory traffic). The PixelSource
+ * find() searches that level once per row phase, reads single rows at coarse resolution only to
+ * pin down header/footer edges, and confirms candidate offsets at full resolution on a few rows.
+ *
+ * Building the coarse level and the candidate search are split into fork-join tasks on the
+ * StitchWorkers pool (level rows, and row phase x offset ranges). Tasks skip every offset that
+ * is not smaller than the best full-resolution match found so far, so the search ends as soon
+ * as the smallest perfect offset is known. Without a pool everything runs on the calling thread.
+ */
+public final class OverlapFinder {
+
+    // Rows per Rabin-Karp pattern block. One uniform row can match anywhere, a block of 16 mostly cannot.
+    private static final int PATTERN_ROWS = 16;
+    // A match must agree on at least this share of the overlapping rows.
+    private static final double MIN_CONFIDENCE = 0.9;
+    // Drop the low bits of each channel when comparing full-resolution rows.
+    private static final int QUANTIZE_MASK = 0x00F8F8F8;
+    private static final long ROW_HASH_BASE = 1099511628211L;
+    private static final long BLOCK_HASH_BASE = 6364136223846793005L;
+
+    /** Horizontal downsampling of coarse signatures: one luma sample per this many pixels. */
+    public static final int COARSE_STEP = 8;
+    /** Vertical downsampling of the coarse level: one signature per this many rows. */
+    public static final int LEVEL_STEP = 8;
+    // Luma is quantized to 5 bits; 12 samples are packed into one long before hashing.
+    private static final int LUMA_SHIFT = 3;
+    private static final int LUMA_PER_WORD = 12;
+    // Full-resolution rows compared per candidate offset.
+    private static final int REFINE_ROWS = 24;
+    // Coarse-level pattern blocks shorter than this fall back to a search on every row.
+    private static final int MIN_LEVEL_PATTERN = 6;
+    // Fork-join leaf sizes: coarse level rows, and candidate offsets of one phase.
+    private static final int LEVEL_ROWS_PER_TASK = 32;
+    private static final int OFFSETS_PER_TASK = 64;
+
+    private OverlapFinder() {}
+
+    /**
+     * Result of comparing two frames.
+     */
+    public static final class Result {
+        /** How many rows the page moved up. Where the bottom frame goes relative to the top frame. */
+        public final int scroll;
+        /** Share of overlapping rows that agree (0..1). 0 means no overlap was found. */
+        public final double confidence;
+        /** Static rows at the top of both frames; skip them when drawing the bottom frame. */
+        public final int headerRows;
+        /** Static rows at the bottom of both frames. */
+        public final int footerRows;
+
+        Result(int scroll, double confidence, int headerRows, int footerRows) {
+            this.scroll = scroll;
+            this.confidence = confidence;
+            this.headerRows = headerRows;
+            this.footerRows = footerRows;
+        }
+
+        public boolean isMatch() {
+            return confidence >= MIN_CONFIDENCE;
+        }
+
+        /** True when the bottom frame adds nothing (page did not move). */
+        public boolean isDuplicate() {
+            return isMatch() && scroll == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "scroll=" + scroll + " confidence=" + confidence + " header=" + headerRows + " footer=" + footerRows;
+        }
+    }
+
+    /**
+     * Coarse signature of one row: quantized luma of every COARSE_STEP-th pixel.
+     * Alpha is ignored and luma is quantized, so anti-aliasing/compression noise does not change it.
+     */
+    public static long coarseRowSignature(int[] pixels, int offset, int width) {
+        long hash = 1469598103934665603L;
+        long word = 0;
+        int packed = 0;
+        for (int i = offset, end = offset + width; i < end; i += COARSE_STEP) {
+            int p = pixels[i];
+            int luma = (77 * ((p >> 16) & 0xFF) + 150 * ((p >> 8) & 0xFF) + 29 * (p & 0xFF)) >> (8 + LUMA_SHIFT);
+            word = (word << 5) | luma;
+            if (++packed == LUMA_PER_WORD) {
+                hash = (hash ^ word) * ROW_HASH_BASE;
+                word = 0;
+                packed = 0;
+            }
+        }
+        return (hash ^ word) * ROW_HASH_BASE;
+    }
+
+    /**
+     * Finds how far the page scrolled between `top` (earlier frame) and `bottom` (later frame),
+     * given their row signatures (one per row, any kind as long as both use the same).
+     */
+    public static Result find(long[] top, long[] bottom) {
+        int topHeight = top.length;
+        int bottomHeight = bottom.length;
+        int n = Math.min(topHeight, bottomHeight);
+        if (n == 0) return new Result(0, 0, 0, 0);
+
+        // 1. Static header: identical rows at the same position from the top.
+        int header = 0;
+        while (header < n && top[header] == bottom[header]) header++;
+        if (header == n) {
+            // Nothing moved at all
+            return new Result(0, 1.0, 0, 0);
+        }
+
+        // 2. Static footer: identical rows at the same position from the bottom.
+        int footer = 0;
+        while (header + footer < n
+                && top[topHeight - 1 - footer] == bottom[bottomHeight - 1 - footer]) {
+            footer++;
+        }
+
+        int topEnd = topHeight - footer;       // Exclusive end of the scrolling band in top
+        int bottomEnd = bottomHeight - footer; // ...and in bottom
+        int bandLength = bottomEnd - header;
+        Result noMatch = new Result(Math.max(0, topEnd - header), 0, header, footer);
+        if (bandLength <= 0 || topEnd - header <= 0) return noMatch;
+
+        // 3. Pick the most informative block of rows near the start of the bottom band.
+        int k = Math.min(PATTERN_ROWS, bandLength);
+        int patternStart = mostInformativeBlock(bottom, header, bottomEnd, k);
+        if (patternStart < 0) return noMatch; // Band is a single repeated row (blank area)
+
+        // 4. Rabin-Karp: slide a k-row window over the top band and compare block hashes.
+        long power = 1;
+        for (int i = 1; i < k; i++) power *= BLOCK_HASH_BASE;
+        long patternHash = blockHash(bottom, patternStart, k);
+
+        int bestScroll = -1;
+        double bestConfidence = 0;
+        long windowHash = 0;
+        for (int p = header; p < topEnd; p++) {
+            if (p - header >= k) {
+                windowHash -= top[p - k] * power;
+            }
+            windowHash = windowHash * BLOCK_HASH_BASE + top[p];
+            int start = p - k + 1;
+            if (start < header || windowHash != patternHash) continue;
+
+            int scroll = start - patternStart;
+            if (scroll < 0 || !blockEquals(top, start, bottom, patternStart, k)) continue;
+
+            // 5. Verify the candidate over the whole overlap, not only the pattern block.
+            double confidence = verify(top, topEnd, bottom, bottomEnd, header, scroll);
+            if (confidence > bestConfidence) {
+                bestConfidence = confidence;
+                bestScroll = scroll;
+                if (confidence == 1.0) break; // Smallest perfect scroll: keep the most content
+            }
+        }
+
+        if (bestScroll < 0 || bestConfidence < MIN_CONFIDENCE) return noMatch;
+        return new Result(bestScroll, bestConfidence, header, footer);
+    }
+
+    /**
+     * Coarse level of a frame: coarseRowSignature() of rows 0, LEVEL_STEP, 2 * LEVEL_STEP, ...
+     */
+    public static long[] coarseLevel(PixelSource frame) {
+        long[] level = new long[(frame.getHeight() + LEVEL_STEP - 1) / LEVEL_STEP];
+        run(new LevelTask(frame, level, 0, level.length));
+        return level;
+    }
+
+    /**
+     * Coarse-to-fine version of find(long[], long[]) on two frames and their coarseLevel().
+     * Both frames must stay readable; only a few of their rows are read again.
+     */
+    public static Result find(PixelSource top, long[] topLevel, PixelSource bottom, long[] bottomLevel) {
+        int height = top.getHeight();
+        int width = top.getWidth();
+        if (height != bottom.getHeight() || width != bottom.getWidth()) {
+            return findFullRows(top, bottom);
+        }
+        FrameRows rows = new FrameRows(top, topLevel, bottom, bottomLevel);
+        int n = topLevel.length;
+
+        // 1. Static header: skip along the coarse level, then step back to the exact first changed row.
+        int i = 0;
+        while (i < n && topLevel[i] == bottomLevel[i]) i++;
+        int header = i == 0 ? 0 : (i - 1) * LEVEL_STEP + 1;
+        int limit = Math.min(height, i * LEVEL_STEP);
+        if (i == n) limit = height;
+        while (header < limit && rows.same(header)) header++;
+        if (header == height) {
+            // Nothing moved at all
+            return new Result(0, 1.0, 0, 0);
+        }
+
+        // 2. Static footer, the same way from the bottom. Row `header` differs, so this stops there at the latest.
+        int last = (n - 1) * LEVEL_STEP;
+        int y = height - 1;
+        while (y > last && rows.same(y)) y--;
+        if (y == last) {
+            int m = n - 1;
+            while (m * LEVEL_STEP > header && topLevel[m] == bottomLevel[m]) m--;
+            y = Math.min(height - 1, (m + 1) * LEVEL_STEP - 1);
+            while (y > m * LEVEL_STEP && rows.same(y)) y--;
+            if (y == m * LEVEL_STEP && rows.same(y)) y--;
+        }
+        int footer = height - 1 - y;
+
+        int bandEnd = height - footer; // Exclusive end of the scrolling band in both frames
+        Result noMatch = new Result(Math.max(0, bandEnd - header), 0, header, footer);
+        if (bandEnd - header <= 0) return noMatch;
+
+        // 3. Pattern: k rows LEVEL_STEP apart, starting at the most informative coarse block.
+        int levelFrom = (header + LEVEL_STEP - 1) / LEVEL_STEP;
+        int levelTo = (bandEnd - 1) / LEVEL_STEP + 1;
+        int k = Math.min(PATTERN_ROWS, levelTo - levelFrom);
+        int patternLevel = k < MIN_LEVEL_PATTERN ? -1 : mostInformativeBlock(bottomLevel, levelFrom, levelTo, k);
+        if (patternLevel < 0) return findFullRows(top, bottom); // Short or blank band
+        int patternStart = patternLevel * LEVEL_STEP;
+        k = Math.min(k, (bandEnd - patternStart) / LEVEL_STEP);
+        if (k < MIN_LEVEL_PATTERN) return findFullRows(top, bottom);
+
+        // 4. One pattern per row phase: bottom rows patternStart + phase + m * LEVEL_STEP land on
+        //    top level rows when scroll = start * LEVEL_STEP - patternStart - phase.
+        Search search = new Search(top, topLevel, bottom, header, bandEnd, patternStart, k);
+        for (int phase = 0; phase < LEVEL_STEP; phase++) {
+            for (int m = 0; m < k; m++) {
+                search.patterns[phase][m] = rows.bottom(patternStart + phase + m * LEVEL_STEP);
+            }
+            search.patternHashes[phase] = blockHash(search.patterns[phase], 0, k);
+        }
+
+        // 5. Rabin-Karp over the top frame's coarse level for every phase, candidates confirmed
+        //    at full resolution, split across the stitch pool.
+        run(new SearchTask(search, 0, LEVEL_STEP * search.starts));
+
+        if (search.bestScroll < 0 || search.bestConfidence < MIN_CONFIDENCE) return noMatch;
+        return new Result(search.bestScroll, search.bestConfidence, header, footer);
+    }
+
+    // Every-row coarse signatures of both frames, searched with find(long[], long[]), confirmed at full resolution.
+    private static Result findFullRows(PixelSource top, PixelSource bottom) {
+        long[] topRows = coarseSignatures(top);
+        long[] bottomRows = coarseSignatures(bottom);
+        Result coarse = find(topRows, bottomRows);
+        if (!coarse.isMatch() || coarse.scroll == 0) return coarse;
+        int width = Math.min(top.getWidth(), bottom.getWidth());
+        double confidence = confirm(top, bottom, coarse.headerRows,
+                Math.min(top.getHeight(), bottom.getHeight()) - coarse.footerRows,
+                coarse.scroll, new int[width], new int[width]);
+        if (confidence < MIN_CONFIDENCE) {
+            return new Result(Math.max(0, top.getHeight() - coarse.footerRows - coarse.headerRows), 0,
+                    coarse.headerRows, coarse.footerRows);
+        }
+        return new Result(coarse.scroll, Math.min(coarse.confidence, confidence), coarse.headerRows, coarse.footerRows);
+    }
+
+    private static long[] coarseSignatures(PixelSource frame) {
+        int width = frame.getWidth();
+        long[] out = new long[frame.getHeight()];
+        int[] row = new int[width];
+        for (int y = 0; y < out.length; y++) {
+            frame.readRows(y, 1, width, row, 0, width);
+            out[y] = coarseRowSignature(row, 0, width);
+        }
+        return out;
+    }
+
+    /**
+     * Share of REFINE_ROWS rows, spread over the overlap of the band [header, bandEnd), that are
+     * equal at full resolution when the page moved by `scroll`. Stops early once it cannot pass.
+     */
+    static double confirm(PixelSource top, PixelSource bottom, int header, int bandEnd, int scroll,
+                          int[] topRow, int[] bottomRow) {
+        int end = bandEnd - scroll;
+        if (end <= header) return 0;
+        int width = Math.min(topRow.length, bottomRow.length);
+        int samples = Math.min(REFINE_ROWS, end - header);
+        int allowedMisses = (int) (samples * (1 - MIN_CONFIDENCE));
+        int misses = 0;
+        for (int n = 0; n < samples; n++) {
+            int j = header + (int) ((long) n * (end - 1 - header) / Math.max(1, samples - 1));
+            bottom.readRows(j, 1, width, bottomRow, 0, width);
+            top.readRows(j + scroll, 1, width, topRow, 0, width);
+            if (!rowsEqual(topRow, bottomRow, width) && ++misses > allowedMisses) return 0;
+        }
+        return (samples - misses) / (double) samples;
+    }
+
+    // =========================================================
+    // Fork-join
+    // =========================================================
+
+    // Runs the task on the stitch pool, or on this thread if there is no pool (or it was just resized).
+    private static void run(StitchTask task) {
+        ForkJoinPool pool = StitchWorkers.getInstance().getPool();
+        if (pool != null) {
+            task.split = true;
+            try {
+                pool.invoke(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Pool shut down by a parallelism change, the task never started
+            }
+        }
+        task.split = false;
+        task.compute();
+    }
+
+    /**
+     * A range [from, to) of work items, halved until leaves of at most `grain` items.
+     */
+    private abstract static class StitchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int from, to, grain;
+        boolean split;
+
+        StitchTask(int from, int to, int grain) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        abstract StitchTask child(int from, int to);
+
+        abstract void leaf();
+
+        @Override
+        protected void compute() {
+            if (!split || to - from <= grain) {
+                leaf();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            StitchTask left = child(from, mid);
+            StitchTask right = child(mid, to);
+            left.split = true;
+            right.split = true;
+            invokeAll(left, right);
+        }
+    }
+
+    // Coarse signatures for level rows [from, to).
+    private static final class LevelTask extends StitchTask {
+        private static final long serialVersionUID = 1L;
+
+        final PixelSource frame;
+        final long[] level;
+
+        LevelTask(PixelSource frame, long[] level, int from, int to) {
+            super(from, to, LEVEL_ROWS_PER_TASK);
+            this.frame = frame;
+            this.level = level;
+        }
+
+        @Override
+        StitchTask child(int from, int to) {
+            return new LevelTask(frame, level, from, to);
+        }
+
+        @Override
+        void leaf() {
+            int width = frame.getWidth();
+            int[] row = new int[width];
+            for (int i = from; i < to; i++) {
+                frame.readRows(i * LEVEL_STEP, 1, width, row, 0, width);
+                level[i] = coarseRowSignature(row, 0, width);
+            }
+        }
+    }
+
+    /**
+     * Everything the search tasks share, including the best offset so far.
+     */
+    private static final class Search {
+        final PixelSource top, bottom;
+        final long[] topLevel;
+        final int header, bandEnd, patternStart, k;
+        final long[][] patterns;
+        final long[] patternHashes;
+        final long power;
+        final int firstStart; // Candidate window starts on the top level: [firstStart, firstStart + starts)
+        final int starts;
+        // Smallest scroll confirmed on every sampled row; tasks skip anything not below it.
+        final AtomicInteger bestPerfect = new AtomicInteger(Integer.MAX_VALUE);
+        int bestScroll = -1;
+        double bestConfidence = 0;
+
+        Search(PixelSource top, long[] topLevel, PixelSource bottom, int header, int bandEnd, int patternStart, int k) {
+            this.top = top;
+            this.topLevel = topLevel;
+            this.bottom = bottom;
+            this.header = header;
+            this.bandEnd = bandEnd;
+            this.patternStart = patternStart;
+            this.k = k;
+            this.patterns = new long[LEVEL_STEP][k];
+            this.patternHashes = new long[LEVEL_STEP];
+            long p = 1;
+            for (int j = 1; j < k; j++) p *= BLOCK_HASH_BASE;
+            this.power = p;
+            this.firstStart = (header + LEVEL_STEP - 1) / LEVEL_STEP;
+            int topTo = (bandEnd - 1) / LEVEL_STEP + 1;
+            this.starts = Math.max(0, topTo - k - firstStart + 1);
+        }
+
+        synchronized void offer(int scroll, double confidence) {
+            if (confidence > bestConfidence || (confidence == bestConfidence && confidence > 0 && scroll < bestScroll)) {
+                bestConfidence = confidence;
+                bestScroll = scroll;
+            }
+            if (confidence == 1.0) {
+                int current;
+                while (scroll < (current = bestPerfect.get()) && !bestPerfect.compareAndSet(current, scroll)) {
+                    // Retry
+                }
+            }
+        }
+    }
+
+    // Work item i = phase * starts + (window start - firstStart). Within a phase the scroll grows with i.
+    private static final class SearchTask extends StitchTask {
+        private static final long serialVersionUID = 1L;
+
+        final Search search;
+
+        SearchTask(Search search, int from, int to) {
+            super(from, to, OFFSETS_PER_TASK);
+            this.search = search;
+        }
+
+        @Override
+        StitchTask child(int from, int to) {
+            return new SearchTask(search, from, to);
+        }
+
+        @Override
+        void leaf() {
+            Search s = search;
+            if (s.starts == 0) return;
+            int[] topRow = new int[s.top.getWidth()];
+            int[] bottomRow = new int[s.top.getWidth()];
+            int i = from;
+            while (i < to) {
+                int phase = i / s.starts;
+                int segmentEnd = Math.min(to, (phase + 1) * s.starts);
+                scan(phase, s.firstStart + i - phase * s.starts, s.firstStart + segmentEnd - phase * s.starts,
+                        topRow, bottomRow);
+                i = segmentEnd;
+            }
+        }
+
+        // Rabin-Karp over window starts [startFrom, startTo) of one phase.
+        private void scan(int phase, int startFrom, int startTo, int[] topRow, int[] bottomRow) {
+            Search s = search;
+            long[] pattern = s.patterns[phase];
+            long patternHash = s.patternHashes[phase];
+            long windowHash = blockHash(s.topLevel, startFrom, s.k);
+            for (int start = startFrom; start < startTo; start++) {
+                if (start > startFrom) {
+                    windowHash = (windowHash - s.topLevel[start - 1] * s.power) * BLOCK_HASH_BASE
+                            + s.topLevel[start + s.k - 1];
+                }
+                int scroll = start * LEVEL_STEP - s.patternStart - phase;
+                if (scroll >= s.bestPerfect.get()) return; // Early exit: only larger offsets remain
+                if (scroll < 0 || windowHash != patternHash) continue;
+                if (!blockEquals(s.topLevel, start, pattern, 0, s.k)) continue;
+
+                double confidence = confirm(s.top, s.bottom, s.header, s.bandEnd, scroll, topRow, bottomRow);
+                s.offer(scroll, confidence);
+                if (confidence == 1.0) return; // Smallest perfect scroll for this phase
+            }
+        }
+    }
+
+    /**
+     * Coarse signatures of single rows of two same-size frames, reusing the coarse level where it has them.
+     */
+    private static final class FrameRows {
+        final PixelSource top, bottom;
+        final long[] topLevel, bottomLevel;
+        final int[] topRow, bottomRow;
+
+        FrameRows(PixelSource top, long[] topLevel, PixelSource bottom, long[] bottomLevel) {
+            this.top = top;
+            this.bottom = bottom;
+            this.topLevel = topLevel;
+            this.bottomLevel = bottomLevel;
+            this.topRow = new int[top.getWidth()];
+            this.bottomRow = new int[top.getWidth()];
+        }
+
+        boolean same(int y) {
+            return row(top, topLevel, topRow, y) == row(bottom, bottomLevel, bottomRow, y);
+        }
+
+        long bottom(int y) {
+            return row(bottom, bottomLevel, bottomRow, y);
+        }
+
+        private static long row(PixelSource frame, long[] level, int[] buffer, int y) {
+            if (y % LEVEL_STEP == 0) return level[y / LEVEL_STEP];
+            frame.readRows(y, 1, buffer.length, buffer, 0, buffer.length);
+            return coarseRowSignature(buffer, 0, buffer.length);
+        }
+    }
+
+    /**
+     * Share of overlapping band rows that agree for a given scroll.
+     */
+    static double verify(long[] top, int topEnd, long[] bottom, int bottomEnd, int header, int scroll) {
+        int end = Math.min(bottomEnd, topEnd - scroll);
+        int length = end - header;
+        if (length <= 0) return 0;
+        int matches = 0;
+        for (int j = header; j < end; j++) {
+            if (bottom[j] == top[j + scroll]) matches++;
+        }
+        return matches / (double) length;
+    }
+
+    /**
+     * Start of the first k-row block in the first half of [from, to) whose rows change at
+     * least k/2 times, so that small overlaps (large scrolls) still contain the pattern.
+     * Falls back to the most varied block; returns -1 if every candidate block is uniform.
+     */
+    static int mostInformativeBlock(long[] rows, int from, int to, int k) {
+        int lastStart = Math.max(from, from + (to - from) / 2 - k);
+        lastStart = Math.min(lastStart, to - k);
+        int enough = Math.max(1, k / 2);
+        // Number of rows in the window that differ from the row above them
+        int current = 0;
+        for (int i = from + 1; i < from + k; i++) {
+            if (rows[i] != rows[i - 1]) current++;
+        }
+        if (current >= enough) return from;
+        int best = current;
+        int bestStart = from;
+        for (int s = from + 1; s <= lastStart; s++) {
+            if (rows[s] != rows[s - 1]) current--;
+            if (rows[s + k - 1] != rows[s + k - 2]) current++;
+            if (current >= enough) return s;
+            if (current > best) {
+                best = current;
+                bestStart = s;
+            }
+        }
+        return best > 0 ? bestStart : -1;
+    }
+
+    private static boolean rowsEqual(int[] a, int[] b, int width) {
+        for (int i = 0; i < width; i++) {
+            if (((a[i] ^ b[i]) & QUANTIZE_MASK) != 0) return false;
+        }
+        return true;
+    }
+
+    private static long blockHash(long[] rows, int start, int k) {
+        long hash = 0;
+        for (int i = start; i < start + k; i++) {
+            hash = hash * BLOCK_HASH_BASE + rows[i];
+        }
+        return hash;
+    }
+
+    private static boolean blockEquals(long[] a, int aStart, long[] b, int bStart, int k) {
+        for (int i = 0; i < k; i++) {
+            if (a[aStart + i] != b[bStart + i]) return false;
+        }
+        return true;
+    }
+}
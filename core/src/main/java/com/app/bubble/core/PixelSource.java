@@ -0,0 +1,19 @@
+package com.app.bubble.core;
+
+/**
+ * A rectangular block of ARGB pixels that can be read row by row.
+ * Lets the stitching code work on Bitmaps, int[] buffers or anything else without
+ * depending on android.graphics.
+ */
+public interface PixelSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Copies `rows` rows starting at row y, columns [0, width), into dst.
+     * Row i goes to dst[dstOffset + i * dstStride].
+     */
+    void readRows(int y, int rows, int width, int[] dst, int dstOffset, int dstStride);
+}
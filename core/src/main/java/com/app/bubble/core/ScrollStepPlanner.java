@@ -0,0 +1,61 @@
+package com.app.bubble.core;
+
+/**
+ * Chooses how far each auto-scroll swipe should go.
+ *
+ * A swipe of d pixels moves the page by some other amount (touch slop, fling, nested scrolling),
+ * so the ratio rows moved / pixels swiped is learned from what OverlapFinder measured between
+ * consecutive frames. The next swipe aims at moving the page by TARGET_ADVANCE of the frame's
+ * scrolling band: as far as possible while the frames still overlap enough to be stitched.
+ * A step whose frames did not match (content was skipped) halves the swipe.
+ *
+ * Not thread safe; plain Java (no android.* imports).
+ */
+public class ScrollStepPlanner {
+
+    // Share of the scrolling band a step should move; the rest is the overlap the finder needs.
+    static final double TARGET_ADVANCE = 0.7;
+    // Weight of the newest measurement in the running rows-per-pixel estimate.
+    private static final double GAIN_SMOOTHING = 0.5;
+
+    private final int minStep;
+    private final int maxStep;
+    private int nextStep;
+    private double gain = 0; // Rows moved per pixel swiped; 0 until the first measurement
+
+    public ScrollStepPlanner(int initialStep, int minStep, int maxStep) {
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+        this.nextStep = clamp(initialStep);
+    }
+
+    /** Swipe distance in pixels for the next step. */
+    public int getNextStep() {
+        return nextStep;
+    }
+
+    /**
+     * Feeds back the stitching result of a frame taken after swiping swipeDistance pixels
+     * since the previous frame. frameHeight is the height of that frame.
+     */
+    public void onStepMeasured(int swipeDistance, OverlapFinder.Result result, int frameHeight) {
+        if (swipeDistance <= 0) return;
+        if (!result.isMatch()) {
+            // Moved further than one frame can bridge: back off hard.
+            nextStep = clamp(swipeDistance / 2);
+            return;
+        }
+        if (result.scroll <= 0) return; // Did not move (end of content or swallowed gesture)
+
+        double measured = result.scroll / (double) swipeDistance;
+        gain = gain == 0 ? measured : gain + GAIN_SMOOTHING * (measured - gain);
+
+        int band = frameHeight - result.headerRows - result.footerRows;
+        if (band <= 0) return;
+        nextStep = clamp((int) (band * TARGET_ADVANCE / gain));
+    }
+
+    private int clamp(int step) {
+        return Math.max(minStep, Math.min(maxStep, step));
+    }
+}
@@ -0,0 +1,70 @@
+package com.app.bubble.core;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The fork-join pool OverlapFinder splits its work across.
+ *
+ * Parallelism comes from Settings (0 = one thread per core) and is dropped to a single thread
+ * while BubbleKeyboardService is on screen, so stitching never competes with typing.
+ * With one thread no pool exists and OverlapFinder runs on the calling thread.
+ *
+ * Plain Java (no android.* imports).
+ */
+public class StitchWorkers {
+
+    private static StitchWorkers instance;
+
+    private int parallelism = 0;
+    private boolean throttled = false;
+    private ForkJoinPool pool;
+
+    private StitchWorkers() {}
+
+    public static synchronized StitchWorkers getInstance() {
+        if (instance == null) {
+            instance = new StitchWorkers();
+        }
+        return instance;
+    }
+
+    /** Worker threads for stitching; 0 means one per available core. */
+    public synchronized void setParallelism(int threads) {
+        if (threads == parallelism) return;
+        parallelism = Math.max(0, threads);
+        resetPool();
+    }
+
+    /** While throttled (keyboard typing) stitching uses the calling thread only. */
+    public synchronized void setThrottled(boolean throttled) {
+        if (this.throttled == throttled) return;
+        this.throttled = throttled;
+        resetPool();
+    }
+
+    /** Threads that will actually be used right now. */
+    public synchronized int getEffectiveParallelism() {
+        if (throttled) return 1;
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * The pool to fork into, or null when work should stay on the calling thread.
+     */
+    public synchronized ForkJoinPool getPool() {
+        int threads = getEffectiveParallelism();
+        if (threads <= 1) return null;
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    // Running tasks finish on the old pool; new work gets a pool of the new size.
+    private void resetPool() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.app.bubble.core;
+
+import java.io.File;
+
+/**
+ * Append-only stitcher for scroll captures.
+ *
+ * Each frame gets a coarse level once, is placed with OverlapFinder's coarse-to-fine search
+ * against the previous frame, and only
+ * its new rows are copied into fixed-height tiles. Nothing that was stitched before is ever
+ * copied again, so N frames cost O(N) pixel copies instead of O(N^2), and there is no height cap:
+ * the result is exposed as a TallImage that supports region reads.
+ *
+ * Tiles live in a TileStore. Given a spill file, only a few hot tiles stay on the heap and the
+ * rest go to disk, so very long captures (chat logs, articles) are bounded by disk space.
+ *
+ * Plain Java (no android.* imports). Not thread-safe: one writer, reads after the writer is done
+ * or from the same thread. The previous frame is read again during the next append(), so callers
+ * must keep each frame readable until the following append() (or release()).
+ */
+public class StreamingStitcher implements TallImage {
+
+    /** Rows per tile. 512 rows of a 1440px frame is ~2.9MB. */
+    public static final int TILE_ROWS = 512;
+
+    private final File spillFile;
+    private final int maxHotTiles;
+    private TileStore tiles;
+    private int width = -1;
+    private int height = 0;
+
+    // The last appended frame, its coarse level and where it sits.
+    private PixelSource previousFrame;
+    private long[] previousLevel;
+    private int previousY;
+
+    // --- Stats ---
+    private int framesAppended = 0;
+    private int framesSkipped = 0;
+    private long rowsCopied = 0;
+
+    /** Keeps all tiles on the heap. */
+    public StreamingStitcher() {
+        this(null, 0);
+    }
+
+    /** Keeps at most maxHotTiles tiles on the heap and spills the rest to spillFile. */
+    public StreamingStitcher(File spillFile, int maxHotTiles) {
+        this.spillFile = spillFile;
+        this.maxHotTiles = maxHotTiles;
+    }
+
+    /**
+     * Adds the next frame of the scroll capture.
+     * @return how the frame was placed: isDuplicate() if it added nothing (the frame is not kept
+     *         and can be released right away), confidence 0 for the first frame.
+     */
+    public OverlapFinder.Result append(PixelSource frame) {
+        if (width < 0) {
+            width = frame.getWidth();
+            tiles = spillFile == null
+                    ? new TileStore(width * TILE_ROWS)
+                    : new TileStore(width * TILE_ROWS, spillFile, maxHotTiles);
+        }
+        long[] level = OverlapFinder.coarseLevel(frame);
+
+        if (previousFrame == null) {
+            copyRows(frame, 0, 0);
+            previousFrame = frame;
+            previousLevel = level;
+            previousY = 0;
+            framesAppended++;
+            return new OverlapFinder.Result(0, 0, 0, 0);
+        }
+
+        OverlapFinder.Result overlap = OverlapFinder.find(previousFrame, previousLevel, frame, level);
+        if (overlap.isDuplicate()) {
+            framesSkipped++;
+            return overlap;
+        }
+
+        // The previous frame's footer is replaced by the new frame's content,
+        // so rewind the write cursor to where that footer starts.
+        int cut = previousY + previousFrame.getHeight() - overlap.footerRows;
+        int frameY = previousY + overlap.scroll;
+        int firstNewRow = Math.max(0, cut - frameY);
+        height = Math.min(height, cut);
+        copyRows(frame, firstNewRow, frameY + firstNewRow);
+
+        previousFrame = frame;
+        previousLevel = level;
+        previousY = frameY;
+        framesAppended++;
+        return overlap;
+    }
+
+    // Copies frame rows [fromRow, end) so that fromRow lands at stitched row y.
+    private void copyRows(PixelSource frame, int fromRow, int y) {
+        int copyWidth = Math.min(width, frame.getWidth());
+        int row = fromRow;
+        int target = y;
+        while (row < frame.getHeight()) {
+            int tileIndex = target / TILE_ROWS;
+            int tileRow = target % TILE_ROWS;
+            int count = Math.min(frame.getHeight() - row, TILE_ROWS - tileRow);
+            frame.readRows(row, count, copyWidth, tiles.getForWrite(tileIndex), tileRow * width, width);
+            row += count;
+            target += count;
+        }
+        rowsCopied += frame.getHeight() - fromRow;
+        height = Math.max(height, target);
+    }
+
+    // =========================================================
+    // TallImage
+    // =========================================================
+
+    @Override
+    public int getWidth() {
+        return Math.max(0, width);
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void readRows(int y, int rows, int width, int[] dst, int dstOffset, int dstStride) {
+        readRegion(0, y, width, rows, dst, dstOffset, dstStride);
+    }
+
+    @Override
+    public void readRegion(int x, int y, int regionWidth, int regionHeight, int[] dst, int dstOffset, int dstStride) {
+        if (x < 0 || y < 0 || x + regionWidth > width || y + regionHeight > height) {
+            throw new IndexOutOfBoundsException("Region " + x + "," + y + " " + regionWidth + "x" + regionHeight
+                    + " outside " + width + "x" + height);
+        }
+        for (int i = 0; i < regionHeight; i++) {
+            int row = y + i;
+            int[] tile = tiles.get(row / TILE_ROWS);
+            System.arraycopy(tile, (row % TILE_ROWS) * width + x, dst, dstOffset + i * dstStride, regionWidth);
+        }
+    }
+
+    /** Drops all tiles and deletes the spill file. The stitcher can be reused for a new capture afterwards. */
+    @Override
+    public void release() {
+        if (tiles != null) tiles.close();
+        tiles = null;
+        width = -1;
+        height = 0;
+        previousFrame = null;
+        previousLevel = null;
+        previousY = 0;
+        framesAppended = 0;
+        framesSkipped = 0;
+        rowsCopied = 0;
+    }
+
+    public int getFramesAppended() { return framesAppended; }
+
+    public int getFramesSkipped() { return framesSkipped; }
+
+    public long getRowsCopied() { return rowsCopied; }
+
+    public int getTilesSpilled() { return tiles == null ? 0 : tiles.getTilesSpilled(); }
+
+    public int getTilesLoaded() { return tiles == null ? 0 : tiles.getTilesLoaded(); }
+}
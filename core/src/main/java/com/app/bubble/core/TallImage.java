@@ -0,0 +1,18 @@
+package com.app.bubble.core;
+
+/**
+ * A virtual image that may be far taller than any single Bitmap could be
+ * (e.g. a stitched scroll capture). Pixels are only reachable through region reads.
+ */
+public interface TallImage extends PixelSource {
+
+    /**
+     * Copies the region (x, y, width, height) into dst, row i at dst[dstOffset + i * dstStride].
+     */
+    void readRegion(int x, int y, int width, int height, int[] dst, int dstOffset, int dstStride);
+
+    /**
+     * Frees the memory (and any disk space) behind the image. It cannot be read afterwards.
+     */
+    void release();
+}
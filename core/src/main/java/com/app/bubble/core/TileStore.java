@@ -0,0 +1,228 @@
+package com.app.bubble.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-size int[] tiles for StreamingStitcher.
+ *
+ * Without a spill file every tile stays on the heap. With one, only the most recently used
+ * `maxHotTiles` tiles are kept in memory (an access-ordered LinkedHashMap); the rest are written
+ * to the file and read back on demand, so a stitched capture is bounded by disk space instead
+ * of heap size. Evicted arrays are reused for the next tile that is loaded.
+ *
+ * Plain Java. Arrays returned by get() are only valid until the next get() call.
+ * I/O failures are rethrown as IllegalStateException.
+ */
+public class TileStore {
+
+    private final int tileLength; // ints per tile
+    private final File spillFile;
+    private final int maxHotTiles;
+
+    // Tile index -> pixels, least recently used first
+    private final LinkedHashMap<Integer, int[]> hotTiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Integer> dirty = new ArrayList<>();
+    private int tileCount = 0;
+    private int[] spare;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private ByteBuffer ioBuffer;
+
+    // --- Stats ---
+    private int tilesSpilled = 0;
+    private int tilesLoaded = 0;
+
+    /** Keeps every tile on the heap. */
+    public TileStore(int tileLength) {
+        this(tileLength, null, Integer.MAX_VALUE);
+    }
+
+    /** Spills tiles beyond the `maxHotTiles` most recently used ones to spillFile. */
+    public TileStore(int tileLength, File spillFile, int maxHotTiles) {
+        this.tileLength = tileLength;
+        this.spillFile = spillFile;
+        this.maxHotTiles = Math.max(2, maxHotTiles);
+    }
+
+    /** Number of tiles created so far. */
+    public synchronized int size() {
+        return tileCount;
+    }
+
+    /**
+     * Tile for reading. Must be an existing tile.
+     */
+    public synchronized int[] get(int index) {
+        if (index < 0 || index >= tileCount) {
+            throw new IndexOutOfBoundsException("Tile " + index + " of " + tileCount);
+        }
+        return load(index);
+    }
+
+    /**
+     * Tile for writing; creates it (and any before it) if needed. The tile will be written back
+     * to the spill file when it is evicted.
+     */
+    public synchronized int[] getForWrite(int index) {
+        while (tileCount <= index) {
+            int created = tileCount++;
+            hotTiles.put(created, newTile());
+            markDirty(created);
+            evictIfNeeded(created);
+        }
+        int[] tile = load(index);
+        markDirty(index);
+        return tile;
+    }
+
+    /**
+     * Drops all tiles and truncates the spill file. The store can be reused afterwards.
+     */
+    public synchronized void clear() {
+        hotTiles.clear();
+        dirty.clear();
+        tileCount = 0;
+        spare = null;
+        if (channel != null) {
+            try {
+                channel.truncate(0);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Drops all tiles and deletes the spill file.
+     */
+    public synchronized void close() {
+        clear();
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            file = null;
+            channel = null;
+            ioBuffer = null;
+        }
+        if (spillFile != null && spillFile.exists() && !spillFile.delete()) {
+            spillFile.deleteOnExit();
+        }
+    }
+
+    public synchronized int getTilesSpilled() { return tilesSpilled; }
+
+    public synchronized int getTilesLoaded() { return tilesLoaded; }
+
+    public synchronized long getSpilledBytes() {
+        try {
+            return channel == null ? 0 : channel.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // =========================================================
+    // Internals
+    // =========================================================
+
+    private int[] load(int index) {
+        int[] tile = hotTiles.get(index); // Also marks it most recently used
+        if (tile != null) return tile;
+
+        tile = newTile();
+        try {
+            readTile(index, tile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read tile " + index, e);
+        }
+        tilesLoaded++;
+        hotTiles.put(index, tile);
+        evictIfNeeded(index);
+        return tile;
+    }
+
+    // Spills least recently used tiles until at most maxHotTiles remain. Never evicts `keep`.
+    private void evictIfNeeded(int keep) {
+        if (spillFile == null) return;
+        Iterator<Map.Entry<Integer, int[]>> it = hotTiles.entrySet().iterator();
+        while (hotTiles.size() > maxHotTiles && it.hasNext()) {
+            Map.Entry<Integer, int[]> eldest = it.next();
+            int index = eldest.getKey();
+            if (index == keep) continue;
+            if (dirty.remove(Integer.valueOf(index))) {
+                try {
+                    writeTile(index, eldest.getValue());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not spill tile " + index, e);
+                }
+                tilesSpilled++;
+            }
+            spare = eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private void markDirty(int index) {
+        if (spillFile != null && !dirty.contains(index)) dirty.add(index);
+    }
+
+    private int[] newTile() {
+        if (spare != null) {
+            int[] tile = spare;
+            spare = null;
+            return tile;
+        }
+        return new int[tileLength];
+    }
+
+    private void openFile() throws IOException {
+        if (channel != null) return;
+        File dir = spillFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        file = new RandomAccessFile(spillFile, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        ioBuffer = ByteBuffer.allocateDirect(tileLength * 4).order(ByteOrder.nativeOrder());
+    }
+
+    private void writeTile(int index, int[] tile) throws IOException {
+        openFile();
+        ioBuffer.clear();
+        ioBuffer.asIntBuffer().put(tile);
+        long position = (long) index * tileLength * 4;
+        while (ioBuffer.hasRemaining()) {
+            channel.write(ioBuffer, position + ioBuffer.position());
+        }
+    }
+
+    private void readTile(int index, int[] tile) throws IOException {
+        openFile();
+        ioBuffer.clear();
+        long position = (long) index * tileLength * 4;
+        while (ioBuffer.hasRemaining()) {
+            if (channel.read(ioBuffer, position + ioBuffer.position()) < 0) {
+                throw new IOException("Spill file ends before tile " + index);
+            }
+        }
+        ioBuffer.flip();
+        IntBuffer ints = ioBuffer.asIntBuffer();
+        ints.get(tile);
+    }
+}
@@ -0,0 +1,131 @@
+package com.app.bubble.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * OverlapFinder on SyntheticPages frame pairs: the coarse-to-fine search must find the exact
+ * scroll for small and large steps, inline and on fork-join pools of several sizes.
+ */
+public class OverlapFinderTest {
+
+    private static final String[] RESOLUTIONS = {"1080x1800", "1440x2400"};
+    // Scroll steps per resolution, from a few rows to 90% of the scrolling band (the coarse
+    // pattern needs PATTERN_ROWS * LEVEL_STEP rows of overlap)
+    private static final int STEPS = 55;
+
+    @After
+    public void resetWorkers() {
+        StitchWorkers.getInstance().setParallelism(0);
+    }
+
+    @Test
+    public void coarseToFineFindsEveryOffsetInline() {
+        assertEveryOffsetFound(1);
+    }
+
+    @Test
+    public void forkJoinFindsEveryOffset() {
+        assertEveryOffsetFound(2);
+        assertEveryOffsetFound(4);
+        assertEveryOffsetFound(0);
+    }
+
+    @Test
+    public void coarseToFineMatchesEveryRowSearch() {
+        int[] size = SyntheticPages.parseResolution(RESOLUTIONS[0]);
+        int width = size[0];
+        int height = size[1];
+        int header = SyntheticPages.headerRows(height);
+        int footer = SyntheticPages.footerRows(height);
+        int band = height - header - footer;
+        int[] page = SyntheticPages.page(width, 2 * band, 11);
+        for (int scroll = 7; scroll <= band * 9 / 10; scroll += 97) {
+            int[] topPixels = SyntheticPages.frame(page, width, height, 0, header, footer);
+            int[] bottomPixels = SyntheticPages.frame(page, width, height, scroll, header, footer);
+            PixelSource top = new IntArrayPixelSource(topPixels, width, height);
+            PixelSource bottom = new IntArrayPixelSource(bottomPixels, width, height);
+
+            OverlapFinder.Result coarse = OverlapFinder.find(top, OverlapFinder.coarseLevel(top),
+                    bottom, OverlapFinder.coarseLevel(bottom));
+            OverlapFinder.Result everyRow = OverlapFinder.find(rowSignatures(topPixels, width, height),
+                    rowSignatures(bottomPixels, width, height));
+            assertEquals("scroll " + scroll, everyRow.scroll, coarse.scroll);
+            assertEquals("scroll " + scroll, scroll, coarse.scroll);
+        }
+    }
+
+    @Test
+    public void unmovedFrameIsDuplicate() {
+        int width = 1080;
+        int height = 1800;
+        int[] page = SyntheticPages.page(width, height, 5);
+        int[] pixels = SyntheticPages.frame(page, width, height, 0,
+                SyntheticPages.headerRows(height), SyntheticPages.footerRows(height));
+        PixelSource top = new IntArrayPixelSource(pixels, width, height);
+        PixelSource bottom = new IntArrayPixelSource(pixels.clone(), width, height);
+
+        OverlapFinder.Result result = OverlapFinder.find(top, OverlapFinder.coarseLevel(top),
+                bottom, OverlapFinder.coarseLevel(bottom));
+        assertTrue(result.toString(), result.isDuplicate());
+    }
+
+    @Test
+    public void unrelatedFramesDoNotMatch() {
+        int width = 1080;
+        int height = 1800;
+        int header = SyntheticPages.headerRows(height);
+        int footer = SyntheticPages.footerRows(height);
+        PixelSource top = new IntArrayPixelSource(SyntheticPages.frame(
+                SyntheticPages.page(width, height, 1), width, height, 0, header, footer), width, height);
+        PixelSource bottom = new IntArrayPixelSource(SyntheticPages.frame(
+                SyntheticPages.page(width, height, 2), width, height, 0, header, footer), width, height);
+
+        OverlapFinder.Result result = OverlapFinder.find(top, OverlapFinder.coarseLevel(top),
+                bottom, OverlapFinder.coarseLevel(bottom));
+        assertFalse(result.toString(), result.isMatch());
+    }
+
+    // =========================================================
+    // Helpers
+    // =========================================================
+
+    private static void assertEveryOffsetFound(int threads) {
+        StitchWorkers.getInstance().setParallelism(threads);
+        for (String resolution : RESOLUTIONS) {
+            int[] size = SyntheticPages.parseResolution(resolution);
+            int width = size[0];
+            int height = size[1];
+            int header = SyntheticPages.headerRows(height);
+            int footer = SyntheticPages.footerRows(height);
+            int band = height - header - footer;
+            int maxScroll = band * 9 / 10;
+            int[] page = SyntheticPages.page(width, band + maxScroll, 42);
+            PixelSource top = new IntArrayPixelSource(SyntheticPages.frame(page, width, height, 0, header, footer), width, height);
+            long[] topLevel = OverlapFinder.coarseLevel(top);
+
+            for (int i = 0; i < STEPS; i++) {
+                int scroll = 3 + (maxScroll - 3) * i / (STEPS - 1);
+                PixelSource bottom = new IntArrayPixelSource(
+                        SyntheticPages.frame(page, width, height, scroll, header, footer), width, height);
+                OverlapFinder.Result result = OverlapFinder.find(top, topLevel, bottom, OverlapFinder.coarseLevel(bottom));
+                String message = resolution + ", " + threads + " threads, scroll " + scroll + ": " + result;
+                assertTrue(message, result.isMatch());
+                assertEquals(message, scroll, result.scroll);
+            }
+        }
+    }
+
+    // A signature for every row, for find(long[], long[]).
+    private static long[] rowSignatures(int[] pixels, int width, int height) {
+        long[] rows = new long[height];
+        for (int y = 0; y < height; y++) {
+            rows[y] = OverlapFinder.coarseRowSignature(pixels, y * width, width);
+        }
+        return rows;
+    }
+}
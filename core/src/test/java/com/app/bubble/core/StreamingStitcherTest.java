@@ -0,0 +1,122 @@
+package com.app.bubble.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A whole scroll capture through StreamingStitcher: 29430 page rows between a 120-row header
+ * and a 150-row footer must come out as one 29700-row image with every row correct, on the
+ * heap and with tiles spilled to disk.
+ */
+public class StreamingStitcherTest {
+
+    private static final int WIDTH = 360;
+    private static final int FRAME_HEIGHT = 1200;
+    private static final int HEADER = 120;
+    private static final int FOOTER = 150;
+    private static final int PAGE_HEIGHT = 29430;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StreamingStitcher stitcher;
+
+    @After
+    public void release() {
+        if (stitcher != null) stitcher.release();
+    }
+
+    @Test
+    public void stitchesEveryRowOnHeap() {
+        stitcher = new StreamingStitcher();
+        int[] page = SyntheticPages.page(WIDTH, PAGE_HEIGHT, 3);
+        stitchCapture(page, 17);
+        assertEveryRow(page);
+        assertEquals(0, stitcher.getTilesSpilled());
+    }
+
+    @Test
+    public void stitchesEveryRowWithSpilledTiles() {
+        File spillFile = new File(folder.getRoot(), "stitch.tiles");
+        stitcher = new StreamingStitcher(spillFile, 6);
+        int[] page = SyntheticPages.page(WIDTH, PAGE_HEIGHT, 4);
+        stitchCapture(page, 23);
+        assertEveryRow(page);
+        assertTrue(stitcher.getTilesSpilled() > 0);
+        assertTrue(stitcher.getTilesLoaded() > 0);
+
+        stitcher.release();
+        stitcher = null;
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void skipsFrameThatDidNotMove() {
+        stitcher = new StreamingStitcher();
+        int[] page = SyntheticPages.page(WIDTH, 2 * FRAME_HEIGHT, 5);
+        stitcher.append(frame(page, 0));
+        int height = stitcher.getHeight();
+
+        assertTrue(stitcher.append(frame(page, 0)).isDuplicate());
+        assertEquals(height, stitcher.getHeight());
+        assertEquals(1, stitcher.getFramesSkipped());
+    }
+
+    // =========================================================
+    // Helpers
+    // =========================================================
+
+    // Frames at random scroll steps of 20% to 80% of the band, the last one showing the end of the page.
+    private void stitchCapture(int[] page, long seed) {
+        int band = FRAME_HEIGHT - HEADER - FOOTER;
+        int lastOffset = PAGE_HEIGHT - band;
+        Random random = new Random(seed);
+        List<Integer> offsets = new ArrayList<>();
+        for (int offset = 0; offset < lastOffset; offset += band / 5 + random.nextInt(band * 3 / 5)) {
+            offsets.add(offset);
+        }
+        offsets.add(lastOffset);
+
+        for (int offset : offsets) {
+            OverlapFinder.Result result = stitcher.append(frame(page, offset));
+            if (offset > 0) assertTrue("Frame at " + offset + ": " + result, result.isMatch());
+        }
+        assertEquals(offsets.size(), stitcher.getFramesAppended());
+    }
+
+    private void assertEveryRow(int[] page) {
+        assertEquals(WIDTH, stitcher.getWidth());
+        assertEquals(HEADER + PAGE_HEIGHT + FOOTER, stitcher.getHeight());
+        int[] expected = new int[WIDTH];
+        int[] actual = new int[WIDTH];
+        for (int y = 0; y < stitcher.getHeight(); y++) {
+            if (y < HEADER) {
+                Arrays.fill(expected, SyntheticPages.HEADER);
+            } else if (y < HEADER + PAGE_HEIGHT) {
+                System.arraycopy(page, (y - HEADER) * WIDTH, expected, 0, WIDTH);
+            } else {
+                Arrays.fill(expected, SyntheticPages.FOOTER);
+            }
+            stitcher.readRows(y, 1, WIDTH, actual, 0, WIDTH);
+            assertArrayEquals("Row " + y, expected, actual);
+        }
+    }
+
+    private static PixelSource frame(int[] page, int offset) {
+        return new IntArrayPixelSource(SyntheticPages.frame(page, WIDTH, FRAME_HEIGHT, offset, HEADER, FOOTER),
+                WIDTH, FRAME_HEIGHT);
+    }
+}
@@ -0,0 +1,70 @@
+package com.app.bubble.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Synthetic scrolled text pages for the tests and benchmarks: a tall page of "text lines" (random
+ * glyph-sized ink blocks with anti-aliasing noise and occasional blank lines), and screen
+ * frames cut from it at increasing scroll offsets with a static header and footer bar.
+ */
+final class SyntheticPages {
+
+    static final int BACKGROUND = 0xFFFAFAFA;
+    static final int HEADER = 0xFF3366AA;
+    static final int FOOTER = 0xFF202830;
+
+    private SyntheticPages() {}
+
+    /** "WIDTHxHEIGHT" -> {width, height} */
+    static int[] parseResolution(String resolution) {
+        String[] parts = resolution.split("x");
+        return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+
+    /** A page of body text (line height width / 22, e.g. 49px at 1080), like a chat or article. */
+    static int[] page(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] page = new int[width * height];
+        Arrays.fill(page, BACKGROUND);
+        int lineHeight = Math.max(24, width / 22);
+        int glyphHeight = lineHeight / 2;
+        int margin = width / 25;
+        for (int top = glyphHeight / 2; top + glyphHeight < height; top += lineHeight) {
+            if (random.nextInt(6) == 0) continue; // Paragraph break
+            int lineEnd = width - margin - random.nextInt(width / 3);
+            for (int x = margin; x < lineEnd; ) {
+                int glyphWidth = glyphHeight / 3 + random.nextInt(glyphHeight);
+                if (random.nextInt(6) == 0) {
+                    x += glyphWidth; // Space
+                    continue;
+                }
+                int ink = 0xFF202020 + random.nextInt(8);
+                for (int y = top; y < top + glyphHeight; y++) {
+                    for (int gx = x; gx < Math.min(lineEnd, x + glyphWidth); gx++) {
+                        if (random.nextInt(3) != 0) page[y * width + gx] = ink;
+                    }
+                }
+                x += glyphWidth + glyphHeight / 5;
+            }
+        }
+        return page;
+    }
+
+    /** A screen frame showing the page from row `offset`, with static header and footer bars. */
+    static int[] frame(int[] page, int width, int height, int offset, int headerRows, int footerRows) {
+        int[] frame = new int[width * height];
+        Arrays.fill(frame, 0, headerRows * width, HEADER);
+        System.arraycopy(page, offset * width, frame, headerRows * width, (height - headerRows - footerRows) * width);
+        Arrays.fill(frame, (height - footerRows) * width, height * width, FOOTER);
+        return frame;
+    }
+
+    static int headerRows(int height) {
+        return height / 16;
+    }
+
+    static int footerRows(int height) {
+        return height / 20;
+    }
+}
@@ -0,0 +1,113 @@
+package com.app.bubble.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * TileStore with a spill file: tiles evicted to disk must read back exactly as written,
+ * in any order and after being rewritten.
+ */
+public class TileStoreTest {
+
+    private static final int TILE_LENGTH = 4096;
+    private static final int TILES = 40;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void spilledTilesReadBack() {
+        File spillFile = new File(folder.getRoot(), "tiles");
+        TileStore store = new TileStore(TILE_LENGTH, spillFile, 3);
+        for (int i = 0; i < TILES; i++) fill(store.getForWrite(i), i);
+        assertEquals(TILES, store.size());
+        assertTrue(store.getTilesSpilled() >= TILES - 3);
+
+        // Random order, so every read may evict and reload
+        Random random = new Random(9);
+        for (int n = 0; n < 4 * TILES; n++) {
+            int index = random.nextInt(TILES);
+            assertTile(store.get(index), index);
+        }
+        assertTrue(store.getTilesLoaded() > 0);
+
+        store.close();
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void rewrittenTileReadsBackNewPixels() {
+        TileStore store = new TileStore(TILE_LENGTH, new File(folder.getRoot(), "tiles"), 2);
+        for (int i = 0; i < TILES; i++) fill(store.getForWrite(i), i);
+
+        // Tile 0 was spilled long ago: load it, change it, push it out again
+        fill(store.getForWrite(0), 1000);
+        for (int i = TILES - 3; i < TILES; i++) store.get(i);
+        assertTile(store.get(0), 1000);
+        for (int i = 1; i < TILES; i++) assertTile(store.get(i), i);
+        store.close();
+    }
+
+    @Test
+    public void clearedStoreIsReusable() {
+        TileStore store = new TileStore(TILE_LENGTH, new File(folder.getRoot(), "tiles"), 2);
+        for (int i = 0; i < 10; i++) fill(store.getForWrite(i), i);
+        store.clear();
+        assertEquals(0, store.size());
+
+        for (int i = 0; i < 10; i++) fill(store.getForWrite(i), 500 + i);
+        for (int i = 0; i < 10; i++) assertTile(store.get(i), 500 + i);
+        store.close();
+    }
+
+    @Test
+    public void heapStoreNeverSpills() {
+        TileStore store = new TileStore(TILE_LENGTH);
+        for (int i = 0; i < TILES; i++) fill(store.getForWrite(i), i);
+        for (int i = 0; i < TILES; i++) assertTile(store.get(i), i);
+        assertEquals(0, store.getTilesSpilled());
+        assertEquals(0, store.getSpilledBytes());
+        store.close();
+    }
+
+    @Test
+    public void missingTileIsRejected() {
+        TileStore store = new TileStore(TILE_LENGTH);
+        store.getForWrite(1);
+        try {
+            store.get(2);
+            fail("Tile 2 does not exist");
+        } catch (IndexOutOfBoundsException expected) {
+            // Expected
+        }
+    }
+
+    // =========================================================
+    // Helpers
+    // =========================================================
+
+    private static void fill(int[] tile, int seed) {
+        for (int i = 0; i < tile.length; i++) tile[i] = pixel(seed, i);
+    }
+
+    private static void assertTile(int[] tile, int seed) {
+        for (int i = 0; i < tile.length; i++) {
+            if (tile[i] != pixel(seed, i)) {
+                fail("Tile " + seed + " differs at " + i + ": " + Integer.toHexString(tile[i]));
+            }
+        }
+    }
+
+    private static int pixel(int seed, int i) {
+        return 0xFF000000 | (seed * 7919 + i * 31) & 0xFFFFFF;
+    }
+}